@@ -0,0 +1,67 @@
+package Tetris;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark of a BatchEngine step over a whole batch of games, with random actions. The batch is restarted with new seeds once every game is over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchEngineBenchmark {
+    private static final int ACTIONS = 64;
+
+    @Param({"10x20", "40x80"})
+    public String size;
+
+    @Param({"1000", "100000"})
+    public int games;
+
+    private int w, h;
+    private long[] seeds;
+    private byte[][] actions;
+    private BatchEngine engine;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] s = this.size.split("x");
+        SplitMix64 r = new SplitMix64(42);
+        int i, j;
+
+        this.w = Integer.parseInt(s[0]);
+        this.h = Integer.parseInt(s[1]);
+        this.seeds = new long[this.games];
+        this.actions = new byte[ACTIONS][this.games];
+        for (i = 0; i < ACTIONS; i++)
+            for (j = 0; j < this.games; j++)
+                this.actions[i][j] = (byte)((r.nextInt(2) == 0)? BatchEngine.NONE: r.nextInt(Replay.Op_t.values().length));
+        this.restart();
+    }
+
+    /**
+     * Creates a new batch, with the next seeds.
+     */
+    private void restart() {
+        for (int i = 0; i < this.games; i++)
+            this.seeds[i] += this.games;
+        this.engine = new BatchEngine(this.w, this.h, 1, this.seeds);
+    }
+
+    /**
+     * Steps every game of the batch once.
+     */
+    @Benchmark
+    public int step() {
+        int running = this.engine.step(this.actions[this.step++ % ACTIONS]);
+
+        if (running == 0)
+            this.restart();
+
+        return running;
+    }
+}
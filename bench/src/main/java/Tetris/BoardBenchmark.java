@@ -0,0 +1,103 @@
+package Tetris;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the wide board backends: WideBoard against the BitSetBoard it replaced, at several widths.
+ * The field is 1000 rows high, with a random stack (no full row) in its lower half.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+    private static final int H = 1000;
+    private static final int STACK = 500;
+
+    @Param({"100", "256", "1024"})
+    public int width;
+
+    @Param({"BitSet", "Wide"})
+    public String board;
+
+    private IBoard field;
+    private long[] rows;
+    private int[] lines;
+    private int x;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random r = new Random(42);
+        int i, j;
+
+        this.field = this.board.equals("Wide")? new WideBoard(this.width, H): new BitSetBoard(this.width, H);
+        for (j = 0; j < STACK; j++) {
+            for (i = 0; i < this.width; i++)
+                if (r.nextInt(4) != 0)
+                    this.field.set(i, j);
+            if (this.field.isFull(j))
+                throw new IllegalStateException();
+        }
+        this.rows = new long[this.field.getWords() * H];
+        this.lines = new int[] {STACK, STACK + 1, STACK + 2, STACK + 3};
+        this.x = 0;
+    }
+
+    /**
+     * Full line check of every row of the stack.
+     */
+    @Benchmark
+    public int isFullScan() {
+        int ret = 0;
+
+        for (int j = 0; j < STACK; j++)
+            if (this.field.isFull(j))
+                ret++;
+
+        return ret;
+    }
+
+    /**
+     * Collision check of a horizontal I tetromino at the next column, on every row of the stack.
+     */
+    @Benchmark
+    public int collisions() {
+        int ret = 0;
+
+        this.x = (this.x + 1) % (this.width - 3);
+        for (int j = 0; j < STACK; j++)
+            if (this.field.intersects(j, 0xf, this.x))
+                ret++;
+
+        return ret;
+    }
+
+    /**
+     * Fills four rows on top of the stack with I tetrominoes and clears them, as a tetris does: the field ends up as it was.
+     */
+    @Benchmark
+    public long lockAndClear() {
+        int i, j;
+
+        for (j = STACK; j < STACK + 4; j++) {
+            for (i = 0; i + 4 <= this.width; i += 4)
+                this.field.or(j, 0xf, i);
+            for (; i < this.width; i++)
+                this.field.set(i, j);
+        }
+        this.field.removeLines(this.lines, 4);
+
+        return this.field.hash();
+    }
+
+    @Benchmark
+    public long[] copyRows() {
+        this.field.copyRows(this.rows);
+
+        return this.rows;
+    }
+}
@@ -0,0 +1,124 @@
+package Tetris;
+
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of the core engine operations at several board sizes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"10x20", "40x80", "256x512"})
+    public String size;
+
+    private int w, h;
+    private Tetris tetris;
+    private long[] image;
+    private int type;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        String[] s = this.size.split("x");
+
+        this.w = Integer.parseInt(s[0]);
+        this.h = Integer.parseInt(s[1]);
+        this.tetris = new Tetris(this.w, this.h, 1, 42);
+        this.image = this.tetris.createImageBuffer();
+        this.type = 0;
+        this.seed = 0;
+    }
+
+    /**
+     * A stack of four rows, full except for one column, with a vertical I tetromino right above the hole: the next moveDown() calls clear four lines.
+     */
+    @State(Scope.Thread)
+    public static class Stack {
+        public Tetris tetris;
+
+        @Setup(Level.Invocation)
+        public void setup(EngineBenchmark b) {
+            Tetris t = new Tetris(b.w, b.h, 1, 42);
+            int hole = b.w / 2;
+            int i, j;
+
+            for (i = 0; i < 4; i++)
+                for (j = 0; j < b.w; j++)
+                    if (j != hole)
+                        t.field.set(j, i);
+            t.current = Tetromino.get(Tetromino.Type_t.I, 1);
+            t.x = hole;
+            t.y = 8;
+            this.tetris = t;
+        }
+    }
+
+    /**
+     * Four collision checks: moving left and right, rotating counterclockwise and clockwise.
+     */
+    @Benchmark
+    public Tetris moveAndRotate() {
+        this.tetris.moveLeft();
+        this.tetris.moveRight();
+        this.tetris.rotateLeft();
+        this.tetris.rotateRight();
+
+        return this.tetris;
+    }
+
+    /**
+     * Drops the I tetromino into the hole, locking it and clearing four lines.
+     */
+    @Benchmark
+    public int moveDownWithClears(Stack s) {
+        while (s.tetris.getLines() == 0)
+            s.tetris.moveDown();
+
+        return s.tetris.getLines();
+    }
+
+    @Benchmark
+    public int ghostY() {
+        return this.tetris.getGhostY();
+    }
+
+    @Benchmark
+    public long[] getImageBuffer() {
+        this.tetris.getImage(this.image);
+
+        return this.image;
+    }
+
+    @Benchmark
+    public LinkedList<BitSet> getImageList() {
+        return this.tetris.getImage();
+    }
+
+    @Benchmark
+    public Tetromino tetrominoSpawn() {
+        this.type = (this.type + 1) % 7;
+
+        return Tetromino.get(Tetromino.typeOf(this.type)).rotateLeft();
+    }
+
+    /**
+     * Plays a whole game with random inputs, from the first tetromino to the game over.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long fullGame() {
+        Simulation s = new Simulation(new Tetris(this.w, this.h, 1, this.seed));
+
+        s.run(new RandomPolicy(this.seed++), Long.MAX_VALUE);
+
+        return s.getTetris().getScore();
+    }
+}
@@ -0,0 +1,54 @@
+package Tetris;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark of the placement enumeration on a half filled playing field.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacementBenchmark {
+    @Param({"10x20", "40x80"})
+    public String size;
+
+    private int w, h;
+    private long[] rows;
+    private int[] out;
+    private PlacementGenerator generator;
+    private int type;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] s = this.size.split("x");
+        Tetris t;
+        int i, j;
+
+        this.w = Integer.parseInt(s[0]);
+        this.h = Integer.parseInt(s[1]);
+        t = new Tetris(this.w, this.h, 1, 42);
+        for (j = 0; j < this.h / 2; j++)
+            for (i = 0; i < this.w; i++)
+                if ((i * 7 + j * 3) % 5 != 0)
+                    t.field.set(i, j);
+        this.rows = new long[this.h];
+        t.getField(this.rows);
+        this.out = new int[4 * this.w];
+        this.generator = new PlacementGenerator(this.w, this.h);
+        this.type = 0;
+    }
+
+    /**
+     * Enumerates the placements of the seven tetrominoes in turn.
+     */
+    @Benchmark
+    public int generate() {
+        this.type = (this.type + 1) % 7;
+
+        return this.generator.generate(this.rows, Tetromino.get(Tetromino.typeOf(this.type)), this.w / 2 - 1, this.h - 1, this.out);
+    }
+}
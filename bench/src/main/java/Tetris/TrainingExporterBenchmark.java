@@ -0,0 +1,65 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmark of the training export: a batch of random games played in parallel by a BatchRunner, every lock being recorded to a temporary file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainingExporterBenchmark {
+    @Param({"10x20", "40x80"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean compress;
+
+    @Param({"1000"})
+    public int games;
+
+    private int w, h;
+    private long[] seeds;
+    private BatchRunner runner;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String[] s = this.size.split("x");
+
+        this.w = Integer.parseInt(s[0]);
+        this.h = Integer.parseInt(s[1]);
+        this.seeds = new long[this.games];
+        for (int i = 0; i < this.games; i++)
+            this.seeds[i] = i;
+        this.runner = new BatchRunner(this.w, this.h, 1, 1000000, Runtime.getRuntime().availableProcessors());
+        this.file = Files.createTempFile("training", ".bin");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.runner.shutdown();
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * Plays and exports the whole batch.
+     */
+    @Benchmark
+    public long export() throws IOException, InterruptedException {
+        TrainingExporter e = new TrainingExporter(this.file, this.w, this.h, this.compress);
+
+        this.runner.setExporter(e);
+        this.runner.run(this.seeds, RandomPolicy.factory());
+        e.close();
+
+        return e.getRecords();
+    }
+}
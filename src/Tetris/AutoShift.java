@@ -0,0 +1,200 @@
+package Tetris;
+
+/**
+ * Applies key events to a Tetris instance, with delayed auto shift (DAS) and auto repeat rate (ARR) counted in game ticks.
+ * A horizontal move, a rotation or a drop is applied as soon as its key is pressed, so even the shortest tap has an effect. A held left or right key repeats its move once it has been
+ * held for DAS ticks, then every ARR ticks (or all the way to the wall if ARR is 0); the last one pressed wins. A held down key moves the tetromino down every ARR ticks (at least one).
+ * Repeated presses of a key which is already held (e.g. keyboard auto repeat) are ignored.
+ */
+public class AutoShift {
+    /**
+     * Default delayed auto shift, in milliseconds.
+     */
+    public static final int DAS = 170;
+
+    /**
+     * Default auto repeat rate, in milliseconds.
+     */
+    public static final int ARR = 50;
+
+    protected Tetris tetris;
+    protected int das, arr;
+    protected boolean[] held;
+    protected int direction;
+    protected int charge, downCharge;
+    protected boolean gameOver;
+    private IGameOver go;
+
+    /**
+     * Constructor. Attaches a game over Command to the Tetris instance: no input is applied once the game is over.
+     * @param t The game.
+     * @param das Delayed auto shift, in ticks.
+     * @param arr Auto repeat rate, in ticks.
+     */
+    public AutoShift(Tetris t, int das, int arr) {
+        if (das < 0 || arr < 0)
+            throw new IllegalArgumentException("Invalid DAS/ARR: " + das + "/" + arr);
+
+        this.das = das;
+        this.arr = arr;
+        this.held = new boolean[Simulation.Key_t.values().length];
+        this.go = new IGameOver() {
+            public void exec() {
+                gameOver = true;
+            }
+        };
+        this.setTetris(t);
+    }
+
+    /**
+     * Replaces the game. Every key is considered released.
+     * @param t The new game.
+     */
+    public void setTetris(Tetris t) {
+        if (this.tetris != null)
+            this.tetris.detachGameOver(this.go);
+        this.tetris = t;
+        this.tetris.attachGameOver(this.go);
+        this.reset();
+    }
+
+    public Tetris getTetris() {
+        return this.tetris;
+    }
+
+    public int getDas() {
+        return this.das;
+    }
+
+    public int getArr() {
+        return this.arr;
+    }
+
+    /**
+     * @return True if tick() has nothing to repeat, i.e. neither a horizontal key nor the down key is held.
+     */
+    public boolean isIdle() {
+        return this.direction == 0 && !this.held[Simulation.Key_t.DOWN.ordinal()];
+    }
+
+    /**
+     * Considers every key released, without affecting the game, and clears the game over flag (e.g. after the game has been restored).
+     */
+    public void reset() {
+        for (int i = 0; i < this.held.length; i++)
+            this.held[i] = false;
+        this.direction = 0;
+        this.charge = 0;
+        this.downCharge = 0;
+        this.gameOver = false;
+    }
+
+    /**
+     * Presses a key.
+     * @param k The key.
+     */
+    public void press(Simulation.Key_t k) {
+        if (this.held[k.ordinal()] || this.gameOver)
+            return;
+
+        this.held[k.ordinal()] = true;
+        switch (k) {
+            case LEFT:
+                this.shift(-1);
+                break;
+            case RIGHT:
+                this.shift(1);
+                break;
+            case DOWN:
+                this.tetris.setDropping(true);
+                this.downCharge = 0;
+                this.tetris.moveDown();
+                break;
+            case ROTATE_LEFT:
+                this.tetris.rotateLeft();
+                break;
+            case ROTATE_RIGHT:
+                this.tetris.rotateRight();
+                break;
+            case HARD_DROP:
+                this.tetris.hardDrop();
+                break;
+        }
+    }
+
+    /**
+     * Releases a key. Releasing left or right while the other one is held resumes shifting towards it, starting over with the DAS.
+     * @param k The key.
+     */
+    public void release(Simulation.Key_t k) {
+        if (!this.held[k.ordinal()])
+            return;
+
+        this.held[k.ordinal()] = false;
+        switch (k) {
+            case LEFT:
+            case RIGHT:
+                if (this.held[Simulation.Key_t.LEFT.ordinal()])
+                    this.direction = -1;
+                else if (this.held[Simulation.Key_t.RIGHT.ordinal()])
+                    this.direction = 1;
+                else
+                    this.direction = 0;
+                this.charge = 0;
+                break;
+            case DOWN:
+                if (!this.gameOver)
+                    this.tetris.setDropping(false);
+                break;
+        }
+    }
+
+    /**
+     * Starts shifting in a direction, with an immediate move.
+     * @param d -1 for left, 1 for right.
+     */
+    private void shift(int d) {
+        this.direction = d;
+        this.charge = 0;
+        this.move();
+    }
+
+    /**
+     * Moves the tetromino once in the current direction.
+     * @return False if it's blocked.
+     */
+    private boolean move() {
+        int x = this.tetris.getX();
+
+        if (this.direction < 0)
+            this.tetris.moveLeft();
+        else
+            this.tetris.moveRight();
+
+        return this.tetris.getX() != x;
+    }
+
+    /**
+     * Repeats the moves of the held keys. It's called once per game tick, after the key events of the tick have been applied.
+     */
+    public void tick() {
+        if (this.gameOver)
+            return;
+
+        if (this.direction != 0) {
+            this.charge++;
+            if (this.charge >= this.das) {
+                if (this.arr == 0)
+                    while (this.move())
+                        ;
+                else if ((this.charge - this.das) % this.arr == 0)
+                    this.move();
+            }
+        }
+
+        if (this.held[Simulation.Key_t.DOWN.ordinal()] && !this.gameOver && ++this.downCharge >= Math.max(this.arr, 1)) {
+            this.downCharge = 0;
+            this.tetris.moveDown();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package Tetris;
+
+/**
+ * IPieceGenerator implementation. The seven tetrominoes are dealt from a shuffled bag, which is refilled once empty: each type appears exactly once every seven tetrominoes.
+ */
+public class BagGenerator implements IPieceGenerator {
+    protected SplitMix64 r;
+    protected int[] bag;
+    protected int index;
+
+    /**
+     * Constructor.
+     * @param seed Seed of the sequence.
+     */
+    public BagGenerator(long seed) {
+        int i;
+
+        this.r = new SplitMix64(seed);
+        this.bag = new int[7];
+        for (i = 0; i < 7; i++)
+            this.bag[i] = i;
+        this.index = 7;
+    }
+
+    public Tetromino.Type_t next() {
+        int i, j, tmp;
+
+        if (this.index == 7) {
+            // Fisher-Yates shuffle.
+            for (i = 6; i > 0; i--) {
+                j = this.r.nextInt(i + 1);
+                tmp = this.bag[i];
+                this.bag[i] = this.bag[j];
+                this.bag[j] = tmp;
+            }
+            this.index = 0;
+        }
+
+        return Tetromino.typeOf(this.bag[this.index++]);
+    }
+
+    /**
+     * Saves the state. The bag is packed in three bits per tetromino, followed by the index.
+     * @param dst Destination, of at least STATE_SIZE elements.
+     */
+    public void saveState(long[] dst) {
+        long b = 0;
+        int i;
+
+        for (i = 0; i < 7; i++)
+            b |= (long)this.bag[i] << (3 * i);
+        dst[0] = this.r.getState();
+        dst[1] = b | (long)this.index << 21;
+    }
+
+    public void loadState(long[] src) {
+        int i;
+
+        this.r.setState(src[0]);
+        for (i = 0; i < 7; i++)
+            this.bag[i] = (int)(src[1] >>> (3 * i)) & 7;
+        this.index = (int)(src[1] >>> 21);
+    }
+}
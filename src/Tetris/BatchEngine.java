@@ -0,0 +1,378 @@
+package Tetris;
+
+/**
+ * Many games stored as a struct of arrays and stepped in lockstep. Every playing field lives in one contiguous long[] (one word per row, so at most 64 columns) and every other
+ * piece of state is a parallel primitive array indexed by game, so a batch of 100k games is a handful of objects for the garbage collector and a step is a tight loop over them.
+ * The rules are exactly those of a Tetris with a UniformGenerator: a game stepped with the same actions as a Tetris instance ends with the same score, lines, level and statistics.
+ * Ranges of games can be stepped by different threads, as long as the ranges don't overlap.
+ */
+public class BatchEngine {
+    /**
+     * Action doing nothing before the update.
+     */
+    public static final byte NONE = -1;
+
+    private static final Replay.Op_t[] OPS = Replay.Op_t.values();
+
+    // Shapes, indexed by 4 * type + rotation: bounding box and row masks (see Tetromino.getRows()).
+    private static final int[] MIN_X = new int[28];
+    private static final int[] MAX_X = new int[28];
+    private static final int[] MIN_Y = new int[28];
+    private static final int[] MAX_Y = new int[28];
+    private static final long[] ROWS = new long[28 * 4];
+
+    static {
+        Tetromino t;
+        int i, j, s;
+
+        for (i = 0; i < 7; i++)
+            for (j = 0; j < 4; j++) {
+                t = Tetromino.get(Tetromino.typeOf(i), j);
+                s = 4 * i + j;
+                MIN_X[s] = t.getMinX();
+                MAX_X[s] = t.getMaxX();
+                MIN_Y[s] = t.getMinY();
+                MAX_Y[s] = t.getMaxY();
+                System.arraycopy(t.getRows(), 0, ROWS, 4 * s, t.getRows().length);
+            }
+    }
+
+    protected int n, w, h;
+    protected long full;
+    protected long[] rows;
+    protected int[] tops;
+    protected long[] generators;
+    protected int[] types, rotations, nexts;
+    protected int[] xs, ys;
+    protected long[] scores;
+    protected int[] lines, levels;
+    protected boolean[] dropping;
+    protected int[] droppingHeights;
+    protected int[] statistics;
+    protected long[] steps;
+    protected boolean[] over;
+
+    /**
+     * Constructor. Creates one game per seed, each one as new Tetris(w, h, level, seed) would.
+     * @param w Width of the playing fields (at most Board.MAX_WIDTH).
+     * @param h Height of the playing fields.
+     * @param level Initial level.
+     * @param seeds Seeds of the tetromino sequences.
+     */
+    public BatchEngine(int w, int h, int level, long[] seeds) {
+        int g;
+
+        if (w <= 0 || w > Board.MAX_WIDTH || h <= 0)
+            throw new IllegalArgumentException("Invalid board size: " + w + "x" + h);
+
+        this.n = seeds.length;
+        this.w = w;
+        this.h = h;
+        this.full = (w == Board.MAX_WIDTH)? -1L: (1L << w) - 1;
+        this.rows = new long[this.n * h];
+        this.tops = new int[this.n];
+        this.generators = seeds.clone();
+        this.types = new int[this.n];
+        this.rotations = new int[this.n];
+        this.nexts = new int[this.n];
+        this.xs = new int[this.n];
+        this.ys = new int[this.n];
+        this.scores = new long[this.n];
+        this.lines = new int[this.n];
+        this.levels = new int[this.n];
+        this.dropping = new boolean[this.n];
+        this.droppingHeights = new int[this.n];
+        this.statistics = new int[7 * this.n];
+        this.steps = new long[this.n];
+        this.over = new boolean[this.n];
+
+        for (g = 0; g < this.n; g++) {
+            this.types[g] = this.nextType(g);
+            this.statistics[7 * g + this.types[g]]++;
+            this.nexts[g] = this.nextType(g);
+            this.xs[g] = w / 2 - 1;
+            this.ys[g] = h - 1;
+            this.levels[g] = (level > 0)? level: 1;
+        }
+    }
+
+    /**
+     * @return Number of games.
+     */
+    public int size() {
+        return this.n;
+    }
+
+    /**
+     * Draws the next tetromino of a game: the same as UniformGenerator.next(), on the generator state stored for the game.
+     * @param g The game.
+     * @return Ordinal of the tetromino type.
+     */
+    private int nextType(int g) {
+        int r, u;
+
+        r = (int)(SplitMix64.mix(this.generators[g] += SplitMix64.GOLDEN_GAMMA) >>> 33);
+        for (u = r; u - (r = u % 7) + 6 < 0; u = (int)(SplitMix64.mix(this.generators[g] += SplitMix64.GOLDEN_GAMMA) >>> 33))
+            ;
+
+        return r;
+    }
+
+    /**
+     * Checks if a tetromino collides with either another block or the playing field's boundaries, as Tetris.collides() does.
+     * @param g The game.
+     * @param s Shape of the tetromino (4 * type + rotation).
+     * @param x Column of the tetromino's pivot.
+     * @param y Row of the tetromino's pivot.
+     * @return True if there is a collision.
+     */
+    private boolean collides(int g, int s, int x, int y) {
+        int base = g * this.h + y - MIN_Y[s];
+        int left = x + MIN_X[s];
+        int i;
+
+        if (left < 0 || x + MAX_X[s] >= this.w || y - MAX_Y[s] < 0 || y - MIN_Y[s] >= this.h)
+            return true;
+
+        for (i = 0; i <= MAX_Y[s] - MIN_Y[s]; i++)
+            if ((this.rows[base - i] & (ROWS[4 * s + i] << left)) != 0)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Steps every game which isn't over: applies its action, then updates it as Tetris.update() does.
+     * @param actions Action of each game: a Replay.Op_t ordinal or NONE.
+     * @return Number of games which aren't over.
+     */
+    public int step(byte[] actions) {
+        return this.step(actions, 0, this.n);
+    }
+
+    /**
+     * Steps a range of games. See step(byte[]).
+     * @param actions Action of each game (indexed by game, not by position in the range).
+     * @param from First game of the range.
+     * @param to Last game of the range, exclusive.
+     * @return Number of games of the range which aren't over.
+     */
+    public int step(byte[] actions, int from, int to) {
+        int ret = 0;
+        int g, s;
+
+        for (g = from; g < to; g++) {
+            if (this.over[g])
+                continue;
+
+            if (actions[g] != NONE)
+                this.apply(g, OPS[actions[g]]);
+
+            // Update: a stuck tetromino means game over, otherwise it moves down.
+            s = 4 * this.types[g] + this.rotations[g];
+            if (this.collides(g, s, this.xs[g], this.ys[g]))
+                this.over[g] = true;
+            else {
+                this.down(g);
+                ret++;
+            }
+            this.steps[g]++;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Applies an action to a game, as the corresponding Tetris method does.
+     * @param g The game.
+     * @param op The action.
+     */
+    private void apply(int g, Replay.Op_t op) {
+        int s = 4 * this.types[g] + this.rotations[g];
+        int ghost;
+
+        switch (op) {
+            case LEFT:
+                if (!this.collides(g, s, this.xs[g] - 1, this.ys[g]))
+                    this.xs[g]--;
+                break;
+            case RIGHT:
+                if (!this.collides(g, s, this.xs[g] + 1, this.ys[g]))
+                    this.xs[g]++;
+                break;
+            case DOWN:
+                this.down(g);
+                break;
+            case ROTATE_LEFT:
+                if (!this.collides(g, 4 * this.types[g] + ((this.rotations[g] + 1) & 3), this.xs[g], this.ys[g]))
+                    this.rotations[g] = (this.rotations[g] + 1) & 3;
+                break;
+            case ROTATE_RIGHT:
+                if (!this.collides(g, 4 * this.types[g] + ((this.rotations[g] + 3) & 3), this.xs[g], this.ys[g]))
+                    this.rotations[g] = (this.rotations[g] + 3) & 3;
+                break;
+            case HARD_DROP:
+                if (this.collides(g, s, this.xs[g], this.ys[g]))
+                    break;
+                for (ghost = this.ys[g]; !this.collides(g, s, this.xs[g], ghost - 1); ghost--)
+                    ;
+                if (!this.dropping[g])
+                    this.droppingHeights[g] = 0;
+                this.droppingHeights[g] += this.ys[g] - ghost + 1;
+                this.ys[g] = ghost;
+                this.lock(g, true);
+                break;
+            case DROP_ON:
+                this.dropping[g] = true;
+                break;
+            case DROP_OFF:
+                this.dropping[g] = false;
+                break;
+        }
+    }
+
+    /**
+     * Moves the tetromino of a game down one block, locking it if there is a collision.
+     * @param g The game.
+     */
+    private void down(int g) {
+        this.ys[g]--;
+
+        if (this.dropping[g])
+            this.droppingHeights[g]++;
+        else
+            this.droppingHeights[g] = 0;
+
+        if (this.collides(g, 4 * this.types[g] + this.rotations[g], this.xs[g], this.ys[g])) {
+            this.ys[g]++;
+            this.lock(g, this.dropping[g]);
+        }
+    }
+
+    /**
+     * Locks the tetromino of a game in place, clears the full lines, updates the score and the level and spawns the next tetromino.
+     * @param g The game.
+     * @param dropped True if the tetromino has been dropped, so the dropping height is added to the score.
+     */
+    private void lock(int g, boolean dropped) {
+        int s = 4 * this.types[g] + this.rotations[g];
+        int base = g * this.h;
+        int bottom = this.ys[g] - MAX_Y[s];
+        int top = this.ys[g] - MIN_Y[s];
+        int left = this.xs[g] + MIN_X[s];
+        int cleared = 0;
+        int i, src, dst;
+
+        for (i = 0; i <= top - bottom; i++)
+            this.rows[base + top - i] |= ROWS[4 * s + i] << left;
+        this.tops[g] = Math.max(this.tops[g], top + 1);
+
+        // Only the rows touched by the tetromino can have been filled: compact from the lowest one up to the top of the stack.
+        for (src = dst = bottom; src < this.tops[g]; src++)
+            if (src <= top && this.rows[base + src] == this.full)
+                cleared++;
+            else
+                this.rows[base + dst++] = this.rows[base + src];
+        for (; dst < this.tops[g]; dst++)
+            this.rows[base + dst] = 0;
+        this.tops[g] -= cleared;
+        this.lines[g] += cleared;
+
+        if (dropped) {
+            this.scores[g] += this.droppingHeights[g];
+            this.droppingHeights[g] = 0;
+        }
+
+        this.types[g] = this.nexts[g];
+        this.rotations[g] = 0;
+        this.nexts[g] = this.nextType(g);
+        this.statistics[7 * g + this.types[g]]++;
+        this.ys[g] = this.h - 1;
+        this.xs[g] = this.w / 2 - 1;
+
+        switch (cleared) {
+            case 1:
+                this.scores[g] += 40 * (this.levels[g] + 1);
+                break;
+            case 2:
+                this.scores[g] += 100 * (this.levels[g] + 1);
+                break;
+            case 3:
+                this.scores[g] += 300 * (this.levels[g] + 1);
+                break;
+            case 4:
+                this.scores[g] += 1200 * (this.levels[g] + 1);
+                break;
+        }
+
+        if (this.lines[g] >= this.levels[g] * 10 && this.lines[g] < this.levels[g] * 11)
+            this.levels[g]++;
+    }
+
+    public boolean isOver(int g) {
+        return this.over[g];
+    }
+
+    public long getScore(int g) {
+        return this.scores[g];
+    }
+
+    public int getLines(int g) {
+        return this.lines[g];
+    }
+
+    public int getLevel(int g) {
+        return this.levels[g];
+    }
+
+    /**
+     * @param g The game.
+     * @return Number of steps played by the game, including the one which ended it.
+     */
+    public long getSteps(int g) {
+        return this.steps[g];
+    }
+
+    public Tetromino.Type_t getCurrent(int g) {
+        return Tetromino.typeOf(this.types[g]);
+    }
+
+    public int getRotation(int g) {
+        return this.rotations[g];
+    }
+
+    public Tetromino.Type_t getNext(int g) {
+        return Tetromino.typeOf(this.nexts[g]);
+    }
+
+    public int getX(int g) {
+        return this.xs[g];
+    }
+
+    public int getY(int g) {
+        return this.ys[g];
+    }
+
+    /**
+     * Copies the playing field of a game, without the current tetromino, in the layout of Tetris.getField(long[]).
+     * @param g The game.
+     * @param dst Buffer of at least h longs.
+     */
+    public void getField(int g, long[] dst) {
+        System.arraycopy(this.rows, g * this.h, dst, 0, this.h);
+    }
+
+    /**
+     * Copies the final state of a game.
+     * @param g The game.
+     * @param seed Seed of the game.
+     * @return The result, with the steps as ticks.
+     */
+    public GameResult getResult(int g, long seed) {
+        int[] s = new int[7];
+
+        System.arraycopy(this.statistics, 7 * g, s, 0, 7);
+
+        return new GameResult(seed, this.scores[g], this.lines[g], this.levels[g], this.steps[g], s);
+    }
+}
@@ -0,0 +1,136 @@
+package Tetris;
+
+/**
+ * Aggregated results of a batch of headless games.
+ */
+public class BatchResult {
+    protected long games;
+    protected long score;
+    protected long maxScore;
+    protected long lines;
+    protected long levels;
+    protected int maxLevel;
+    protected long ticks;
+    protected long[] statistics;
+    protected long elapsed;
+
+    /**
+     * Constructor. Creates an empty result.
+     */
+    public BatchResult() {
+        this.statistics = new long[7];
+    }
+
+    /**
+     * Adds a single game.
+     * @param g The game's result.
+     */
+    public void add(GameResult g) {
+        int i;
+
+        this.games++;
+        this.score += g.score;
+        this.maxScore = Math.max(this.maxScore, g.score);
+        this.lines += g.lines;
+        this.levels += g.level;
+        this.maxLevel = Math.max(this.maxLevel, g.level);
+        this.ticks += g.ticks;
+        for (i = 0; i < 7; i++)
+            this.statistics[i] += g.statistics[i];
+    }
+
+    /**
+     * Adds every game of another batch.
+     * @param b The other batch.
+     */
+    public void merge(BatchResult b) {
+        int i;
+
+        this.games += b.games;
+        this.score += b.score;
+        this.maxScore = Math.max(this.maxScore, b.maxScore);
+        this.lines += b.lines;
+        this.levels += b.levels;
+        this.maxLevel = Math.max(this.maxLevel, b.maxLevel);
+        this.ticks += b.ticks;
+        for (i = 0; i < 7; i++)
+            this.statistics[i] += b.statistics[i];
+    }
+
+    public long getGames() {
+        return this.games;
+    }
+
+    public long getScore() {
+        return this.score;
+    }
+
+    public long getMaxScore() {
+        return this.maxScore;
+    }
+
+    public double getAverageScore() {
+        return (this.games > 0)? (double)this.score / this.games: 0;
+    }
+
+    public long getLines() {
+        return this.lines;
+    }
+
+    public double getAverageLines() {
+        return (this.games > 0)? (double)this.lines / this.games: 0;
+    }
+
+    public double getAverageLevel() {
+        return (this.games > 0)? (double)this.levels / this.games: 0;
+    }
+
+    public int getMaxLevel() {
+        return this.maxLevel;
+    }
+
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Gets the number of tetrominoes spawned for each type, summed over every game.
+     * @return Histogram indexed by Tetromino.Type_t ordinal.
+     */
+    public long[] getStatistics() {
+        return this.statistics;
+    }
+
+    public void setElapsed(long nanos) {
+        this.elapsed = nanos;
+    }
+
+    /**
+     * @return Wall clock time spent playing the batch, in nanoseconds.
+     */
+    public long getElapsed() {
+        return this.elapsed;
+    }
+
+    /**
+     * @return Throughput of the batch.
+     */
+    public double getGamesPerSecond() {
+        return (this.elapsed > 0)? this.games * 1e9 / this.elapsed: 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int i;
+
+        sb.append(String.format("Games: %d (%.1f games/s) Score: %.1f avg, %d max Lines: %.2f avg Lv: %.2f avg, %d max Ticks: %d",
+                this.games, this.getGamesPerSecond(), this.getAverageScore(), this.maxScore, this.getAverageLines(),
+                this.getAverageLevel(), this.maxLevel, this.ticks));
+        sb.append(" Pieces:");
+        for (i = 0; i < 7; i++)
+            sb.append(' ').append(Tetromino.Type_t.values()[i]).append('=').append(this.statistics[i]);
+
+        return sb.toString();
+    }
+}
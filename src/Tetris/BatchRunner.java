@@ -0,0 +1,157 @@
+package Tetris;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many independent headless games in parallel on a fork-join pool. Every game has its own Tetris, Simulation and policy, so the workers share nothing but the final reduction.
+ */
+public class BatchRunner {
+    /**
+     * Number of games played sequentially by a single fork-join task.
+     */
+    private static final int THRESHOLD = 16;
+
+    protected int w;
+    protected int h;
+    protected int level;
+    protected long maxTicks;
+    protected ForkJoinPool pool;
+    protected TrainingExporter exporter;
+
+    /**
+     * Constructor. Uses one worker per available core.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @param level Initial level.
+     * @param maxTicks Maximum number of ticks for each game.
+     */
+    public BatchRunner(int w, int h, int level, long maxTicks) {
+        this(w, h, level, maxTicks, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @param level Initial level.
+     * @param maxTicks Maximum number of ticks for each game.
+     * @param parallelism Number of worker threads.
+     */
+    public BatchRunner(int w, int h, int level, long maxTicks, int parallelism) {
+        this.w = w;
+        this.h = h;
+        this.level = level;
+        this.maxTicks = maxTicks;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Records the locks of every game played from now on.
+     * @param e The exporter, or null to stop recording. Its playing fields must have the size of the games.
+     */
+    public void setExporter(TrainingExporter e) {
+        this.exporter = e;
+    }
+
+    /**
+     * Plays a single game.
+     * @param seed Seed of the tetromino sequence.
+     * @param f Factory of the input policy.
+     * @return The final state of the game.
+     */
+    public GameResult play(long seed, IPolicyFactory f) {
+        Simulation s = new Simulation(new Tetris(this.w, this.h, this.level, seed));
+
+        if (this.exporter != null)
+            this.exporter.attach(s.getTetris(), seed);
+        s.run(f.create(seed), this.maxTicks);
+
+        return new GameResult(seed, s);
+    }
+
+    /**
+     * Plays one game for each seed and aggregates the results.
+     * @param seeds Seeds of the games.
+     * @param f Factory of the input policies.
+     * @return The aggregated results, including the elapsed time.
+     */
+    public BatchResult run(long[] seeds, IPolicyFactory f) {
+        long start = System.nanoTime();
+        BatchResult ret = this.pool.invoke(new Task(seeds, 0, seeds.length, f));
+
+        ret.setElapsed(System.nanoTime() - start);
+
+        return ret;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Fork-join task playing a range of seeds.
+     */
+    private class Task extends RecursiveTask<BatchResult> {
+        private long[] seeds;
+        private int from, to;
+        private IPolicyFactory f;
+
+        public Task(long[] seeds, int from, int to, IPolicyFactory f) {
+            this.seeds = seeds;
+            this.from = from;
+            this.to = to;
+            this.f = f;
+        }
+
+        @Override
+        protected BatchResult compute() {
+            BatchResult ret;
+            Task left;
+            int i, mid;
+
+            if (this.to - this.from <= THRESHOLD) {
+                ret = new BatchResult();
+                for (i = this.from; i < this.to; i++)
+                    ret.add(play(this.seeds[i], this.f));
+            }
+            else {
+                mid = (this.from + this.to) >>> 1;
+                left = new Task(this.seeds, this.from, mid, this.f);
+                left.fork();
+                ret = new Task(this.seeds, mid, this.to, this.f).compute();
+                ret.merge(left.join());
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Plays a batch of random games and prints the results.
+     * @param args Number of games, number of threads, width, height and initial level (all optional).
+     */
+    public static void main(String args[]) {
+        int games = (args.length > 0)? Integer.parseInt(args[0]): 10000;
+        int threads = (args.length > 1)? Integer.parseInt(args[1]): Runtime.getRuntime().availableProcessors();
+        int w = (args.length > 2)? Integer.parseInt(args[2]): 10;
+        int h = (args.length > 3)? Integer.parseInt(args[3]): 20;
+        int level = (args.length > 4)? Integer.parseInt(args[4]): 1;
+        long[] seeds = new long[games];
+        BatchRunner runner = new BatchRunner(w, h, level, 1000000, threads);
+        int i;
+
+        for (i = 0; i < games; i++)
+            seeds[i] = i;
+
+        System.out.println(runner.run(seeds, RandomPolicy.factory()));
+        runner.shutdown();
+    }
+}
@@ -0,0 +1,182 @@
+package Tetris;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * IBoard implementation which stores each row in a BitSet. It has no width limit; WideBoard is used instead for the fields which don't fit in a Board, and this one is kept as a reference.
+ */
+public class BitSetBoard implements IBoard {
+    protected int w;
+    protected int h;
+    protected LinkedList<BitSet> field;
+    protected int[] heights;
+    protected long hash;
+
+    /**
+     * Constructor. Creates an empty field.
+     * @param w Width of the field.
+     * @param h Height of the field.
+     */
+    public BitSetBoard(int w, int h) {
+        int i;
+
+        this.w = w;
+        this.h = h;
+        this.field = new LinkedList<BitSet>();
+        for (i = 0; i < h; i++)
+            this.field.add(new BitSet(w));
+        this.heights = new int[w];
+        this.hash = 0;
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public int getWords() {
+        return (this.w + 63) / 64;
+    }
+
+    public boolean get(int x, int y) {
+        return this.field.get(y).get(x);
+    }
+
+    public void set(int x, int y) {
+        BitSet row = this.field.get(y);
+
+        this.hash ^= Zobrist.row(y, fingerprint(row));
+        row.set(x, true);
+        this.hash ^= Zobrist.row(y, fingerprint(row));
+        if (this.heights[x] <= y)
+            this.heights[x] = y + 1;
+    }
+
+    public int getColumnHeight(int x) {
+        return this.heights[x];
+    }
+
+    public boolean intersects(int y, long mask, int x) {
+        BitSet row = this.field.get(y);
+        int i;
+
+        for (i = 0; mask >>> i != 0; i++)
+            if ((mask & (1L << i)) != 0 && row.get(x + i))
+                return true;
+
+        return false;
+    }
+
+    public void or(int y, long mask, int x) {
+        BitSet row = this.field.get(y);
+        int i;
+
+        this.hash ^= Zobrist.row(y, fingerprint(row));
+        for (i = 0; mask >>> i != 0; i++)
+            if ((mask & (1L << i)) != 0) {
+                row.set(x + i);
+                if (this.heights[x + i] <= y)
+                    this.heights[x + i] = y + 1;
+            }
+        this.hash ^= Zobrist.row(y, fingerprint(row));
+    }
+
+    /**
+     * Computes the fingerprint of a row, as Zobrist.hash() does for a snapshot.
+     * @param row The row.
+     * @return XOR of Zobrist.word() over the words of the row.
+     */
+    private static long fingerprint(BitSet row) {
+        long ret = 0, word = 0;
+        int i, k = -1;
+
+        for (i = row.nextSetBit(0); i >= 0; i = row.nextSetBit(i + 1)) {
+            if (i >> 6 != k) {
+                ret ^= Zobrist.word(word, k);
+                word = 0;
+                k = i >> 6;
+            }
+            word |= 1L << i;
+        }
+
+        return ret ^ Zobrist.word(word, k);
+    }
+
+    public boolean isFull(int y) {
+        return this.field.get(y).cardinality() == this.w;
+    }
+
+    public void removeLines(int[] lines, int n) {
+        int i;
+
+        if (n == 0)
+            return;
+
+        // Only the rows from the lowest cleared line upwards change: rekey them.
+        i = lines[0];
+        for (Iterator<BitSet> iter = this.field.listIterator(lines[0]); iter.hasNext(); i++)
+            this.hash ^= Zobrist.row(i, fingerprint(iter.next()));
+        for (i = n - 1; i >= 0; i--) {
+            this.field.remove(lines[i]);
+            this.field.add(new BitSet(this.w));
+        }
+        i = lines[0];
+        for (Iterator<BitSet> iter = this.field.listIterator(lines[0]); iter.hasNext(); i++)
+            this.hash ^= Zobrist.row(i, fingerprint(iter.next()));
+
+        // The removed lines were full, so every column reaches the highest of them.
+        for (i = 0; i < this.w; i++)
+            if (this.heights[i] > lines[n - 1] + 1)
+                this.heights[i] -= n;
+            else {
+                this.heights[i] = lines[n - 1] + 1 - n;
+                while (this.heights[i] > 0 && !this.get(i, this.heights[i] - 1))
+                    this.heights[i]--;
+            }
+    }
+
+    public void copyRows(long[] dst) {
+        int words = this.getWords();
+        int i, j;
+        BitSet row;
+
+        Arrays.fill(dst, 0, words * this.h, 0);
+        i = 0;
+        for (Iterator<BitSet> iter = this.field.iterator(); iter.hasNext(); i += words) {
+            row = iter.next();
+            for (j = row.nextSetBit(0); j >= 0; j = row.nextSetBit(j + 1))
+                dst[i + (j >> 6)] |= 1L << j;
+        }
+    }
+
+    public long hash() {
+        return this.hash;
+    }
+
+    public void copyHeights(int[] dst) {
+        System.arraycopy(this.heights, 0, dst, 0, this.w);
+    }
+
+    public void load(long[] rows, int[] heights, long hash) {
+        int words = this.getWords();
+        int i = 0, k;
+        long m;
+        BitSet row;
+
+        for (Iterator<BitSet> iter = this.field.iterator(); iter.hasNext(); i += words) {
+            row = iter.next();
+            row.clear();
+            for (k = 0; k < words; k++)
+                for (m = rows[i + k]; m != 0; m &= m - 1)
+                    row.set(64 * k + Long.numberOfTrailingZeros(m));
+        }
+        System.arraycopy(heights, 0, this.heights, 0, this.w);
+        this.hash = hash;
+    }
+}
@@ -0,0 +1,170 @@
+package Tetris;
+
+/**
+ * IBoard implementation for fields up to 64 blocks wide. Each row is a single long bitmask (bit i is column i) and the rows are kept in a ring buffer, so clearing a line only shifts the shorter side of the field and moves the offset of the bottom row.
+ */
+public class Board implements IBoard {
+    public static final int MAX_WIDTH = 64;
+
+    protected int w;
+    protected int h;
+    protected long[] rows;
+    protected int bottom;
+    protected long full;
+    protected int[] heights;
+    protected long hash;
+
+    /**
+     * Constructor. Creates an empty field.
+     * @param w Width of the field (at most MAX_WIDTH).
+     * @param h Height of the field.
+     */
+    public Board(int w, int h) {
+        if (w <= 0 || w > MAX_WIDTH || h <= 0)
+            throw new IllegalArgumentException("Invalid board size: " + w + "x" + h);
+
+        this.w = w;
+        this.h = h;
+        this.rows = new long[h];
+        this.bottom = 0;
+        this.full = (w == MAX_WIDTH)? -1L: (1L << w) - 1;
+        this.heights = new int[w];
+        this.hash = 0;
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public int getWords() {
+        return 1;
+    }
+
+    /**
+     * Maps a row of the field to its position inside the ring buffer.
+     * @param y Row of the field.
+     * @return Index inside rows.
+     */
+    protected int index(int y) {
+        int i = this.bottom + y;
+
+        return (i >= this.h)? i - this.h: i;
+    }
+
+    public boolean get(int x, int y) {
+        return (this.rows[this.index(y)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        int i = this.index(y);
+
+        this.hash ^= Zobrist.row(y, Zobrist.word(this.rows[i], 0)) ^ Zobrist.row(y, Zobrist.word(this.rows[i] | 1L << x, 0));
+        this.rows[i] |= 1L << x;
+        if (this.heights[x] <= y)
+            this.heights[x] = y + 1;
+    }
+
+    public int getColumnHeight(int x) {
+        return this.heights[x];
+    }
+
+    public boolean intersects(int y, long mask, int x) {
+        return (this.rows[this.index(y)] & (mask << x)) != 0;
+    }
+
+    public void or(int y, long mask, int x) {
+        long m = mask << x;
+        int i = this.index(y);
+
+        this.hash ^= Zobrist.row(y, Zobrist.word(this.rows[i], 0)) ^ Zobrist.row(y, Zobrist.word(this.rows[i] | m, 0));
+        this.rows[i] |= m;
+        for (; m != 0; m &= m - 1) {
+            i = Long.numberOfTrailingZeros(m);
+            if (this.heights[i] <= y)
+                this.heights[i] = y + 1;
+        }
+    }
+
+    public boolean isFull(int y) {
+        return this.rows[this.index(y)] == this.full;
+    }
+
+    public void removeLines(int[] lines, int n) {
+        int top = 0;
+        int i, k, src, dst;
+
+        if (n == 0)
+            return;
+
+        for (i = 0; i < this.w; i++)
+            top = Math.max(top, this.heights[i]);
+
+        // Only the rows from the lowest cleared line upwards change: remove their keys now, add the new ones after the shift.
+        for (i = lines[0]; i < top; i++)
+            this.hash ^= Zobrist.row(i, Zobrist.word(this.rows[this.index(i)], 0));
+
+        if (lines[n - 1] < top - lines[0]) {
+            // Fewer rows below the cleared lines: move them up, then the (now empty) bottom slots become the top rows.
+            k = n - 1;
+            dst = lines[n - 1];
+            for (src = lines[n - 1]; src >= 0; src--)
+                if (k >= 0 && src == lines[k])
+                    k--;
+                else
+                    this.rows[this.index(dst--)] = this.rows[this.index(src)];
+            for (i = 0; i < n; i++)
+                this.rows[this.index(i)] = 0;
+            this.bottom = this.index(n);
+        }
+        else {
+            // Move the rows above down, up to the highest occupied one.
+            k = 0;
+            dst = lines[0];
+            for (src = lines[0]; src < top; src++)
+                if (k < n && src == lines[k])
+                    k++;
+                else
+                    this.rows[this.index(dst++)] = this.rows[this.index(src)];
+            for (; dst < top; dst++)
+                this.rows[this.index(dst)] = 0;
+        }
+        for (i = lines[0]; i < top - n; i++)
+            this.hash ^= Zobrist.row(i, Zobrist.word(this.rows[this.index(i)], 0));
+
+        // The removed lines were full, so every column reaches the highest of them.
+        for (i = 0; i < this.w; i++)
+            if (this.heights[i] > lines[n - 1] + 1)
+                this.heights[i] -= n;
+            else {
+                this.heights[i] = lines[n - 1] + 1 - n;
+                while (this.heights[i] > 0 && !this.get(i, this.heights[i] - 1))
+                    this.heights[i]--;
+            }
+    }
+
+    public void copyRows(long[] dst) {
+        int n = this.h - this.bottom;
+
+        System.arraycopy(this.rows, this.bottom, dst, 0, n);
+        System.arraycopy(this.rows, 0, dst, n, this.bottom);
+    }
+
+    public long hash() {
+        return this.hash;
+    }
+
+    public void copyHeights(int[] dst) {
+        System.arraycopy(this.heights, 0, dst, 0, this.w);
+    }
+
+    public void load(long[] rows, int[] heights, long hash) {
+        this.bottom = 0;
+        System.arraycopy(rows, 0, this.rows, 0, this.h);
+        System.arraycopy(heights, 0, this.heights, 0, this.w);
+        this.hash = hash;
+    }
+}
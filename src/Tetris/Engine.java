@@ -0,0 +1,205 @@
+package Tetris;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer access layer of a game. Only the engine thread touches the Tetris instance: other threads submit IEngineCommands, which are executed in submission order between
+ * two steps of the game timers, and read the game through immutable GameViews published via a volatile reference. Renderers, metrics and network sessions can thus read a consistent
+ * game without locks, whichever thread they run on. Listeners attached to the game (e.g. game over, lock) are called by the engine thread.
+ * The Simulation is advanced on a fixed timestep, catching up after a slow iteration or a GC pause. Keys can be pressed and released from a single other thread (e.g. the event dispatch thread):
+ * they're timestamped in an InputQueue and every step applies the ones recorded up to its scheduled time to the AutoShift of the Simulation, which repeats the held keys.
+ */
+public class Engine implements Runnable {
+    /**
+     * Logical duration of a step, in milliseconds.
+     */
+    public static final int STEP = Simulation.STEP;
+
+    /**
+     * Maximum number of steps processed in a row. If the engine falls further behind, the backlog is dropped and the game slows down instead of spiraling.
+     */
+    public static final int MAX_CATCH_UP = 40;
+
+    protected Simulation simulation;
+    protected Tetris tetris;
+    protected InputQueue inputs;
+    protected ConcurrentLinkedQueue<IEngineCommand> commands;
+    protected Metrics metrics;
+    protected volatile GameView view;
+    protected long version;
+    protected volatile boolean running;
+    protected Thread thread;
+
+    /**
+     * Constructor. The game must not be touched by any other thread from now on.
+     * @param s The game, with its timers.
+     * @param metrics Metrics of the steps (as ticks), key event delays (as inputs) and step lateness (as timer jitter).
+     */
+    public Engine(Simulation s, Metrics metrics) {
+        this.simulation = s;
+        this.tetris = s.getTetris();
+        this.inputs = new InputQueue();
+        this.commands = new ConcurrentLinkedQueue<>();
+        this.metrics = metrics;
+        this.version = 0;
+        this.running = false;
+        this.publish();
+    }
+
+    /**
+     * Constructor. The game must not be touched by any other thread from now on.
+     * @param s The game, with its timers.
+     */
+    public Engine(Simulation s) {
+        this(s, new Metrics());
+    }
+
+    public Simulation getSimulation() {
+        return this.simulation;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return The latest view of the game. Successive calls may return different views, so a reader should keep the one it got for the whole frame.
+     */
+    public GameView getView() {
+        return this.view;
+    }
+
+    /**
+     * Presses a key. See AutoShift.press(). Must only be called by a single thread.
+     * @param k The key.
+     * @return False if the input queue is full and the event has been dropped.
+     */
+    public boolean press(Simulation.Key_t k) {
+        return this.inputs.press(k);
+    }
+
+    /**
+     * Releases a key. See AutoShift.release(). Must only be called by a single thread.
+     * @param k The key.
+     * @return False if the input queue is full and the event has been dropped.
+     */
+    public boolean release(Simulation.Key_t k) {
+        return this.inputs.release(k);
+    }
+
+    /**
+     * Submits a command, which is executed before the next step. Any thread can call it. Commands are rejected unless the engine is running and the game isn't over,
+     * so nothing piles up once the engine thread has ended.
+     * @param c The command.
+     * @return False if the command has been rejected.
+     */
+    public boolean submit(IEngineCommand c) {
+        if (!this.running || this.view.gameOver)
+            return false;
+
+        this.commands.add(c);
+        if (!this.running) {
+            // The engine thread ended meanwhile: nobody will execute the command.
+            this.commands.clear();
+            return false;
+        }
+        if (this.thread != null)
+            LockSupport.unpark(this.thread);
+
+        return true;
+    }
+
+    /**
+     * Starts the engine thread.
+     */
+    public void start() {
+        this.running = true;
+        this.thread = new Thread(this, this.getClass().getSimpleName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops the engine thread and waits for it. Pending commands are discarded.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void stop() throws InterruptedException {
+        this.running = false;
+        if (this.thread != null) {
+            LockSupport.unpark(this.thread);
+            this.thread.join();
+        }
+    }
+
+    /**
+     * Executes the pending commands. Must only be called by the engine thread.
+     * @return Number of commands executed.
+     */
+    protected int execute() {
+        IEngineCommand c;
+        int n = 0;
+
+        while ((c = this.commands.poll()) != null)
+            if (!this.simulation.isGameOver()) {
+                c.exec(this.tetris);
+                n++;
+            }
+
+        return n;
+    }
+
+    /**
+     * Publishes a new view of the game. Must only be called by the engine thread.
+     */
+    protected void publish() {
+        this.view = new GameView(this.tetris, ++this.version, this.simulation.getTime(), this.simulation.isGameOver());
+    }
+
+    /**
+     * Called by the engine thread after the steps of each iteration, e.g. to draw a frame. It does nothing by default.
+     * @param now Timestamp of the iteration, from System.nanoTime().
+     * @param next Timestamp of the next step.
+     * @return Timestamp until which the engine thread may sleep, at most next.
+     */
+    protected long render(long now, long next) {
+        return next;
+    }
+
+    /**
+     * Body of the engine thread. Commands are executed as soon as they're submitted and the game timers advance on a fixed timestep; a view is published after each batch which
+     * changed something. It ends when the game is over (after a last call to render()) or when the engine is stopped, discarding the pending commands.
+     */
+    public void run() {
+        long step = STEP * 1000000L;
+        long next = System.nanoTime();
+        long now, ticks, t;
+        int n, k;
+
+        while (this.running && !this.simulation.isGameOver()) {
+            now = System.nanoTime();
+            if (now - next >= 0 && this.metrics.isEnabled())
+                this.metrics.getTimerJitter().record(now - next);
+
+            n = this.execute();
+            ticks = this.simulation.getTicks();
+            for (k = 0; now - next >= 0 && k < MAX_CATCH_UP && !this.simulation.isGameOver(); k++) {
+                t = this.metrics.start();
+                this.inputs.drain(next, this.simulation.getAutoShift(), this.metrics);
+                this.simulation.advance(STEP);
+                this.metrics.tick(t);
+                next += step;
+            }
+            if (k == MAX_CATCH_UP)
+                next = now + step;
+            if (n > 0 || this.simulation.getTicks() != ticks)
+                this.publish();
+
+            t = this.render(now, next) - System.nanoTime();
+            if (t > 0 && this.commands.isEmpty())
+                LockSupport.parkNanos(this, t);
+        }
+        this.running = false;
+        this.commands.clear();
+    }
+}
@@ -0,0 +1,171 @@
+package Tetris;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches game events to a copy-on-write list of listeners, so listeners can be attached or detached from any thread without locking the publisher.
+ * In synchronous mode the listeners run on the publishing thread. In asynchronous mode events are copied into a bounded ring buffer of preallocated slots and dispatched by a daemon thread:
+ * publishing never blocks and never allocates, and events are dropped (and counted) when the consumer falls behind.
+ * Events must be published by a single thread (the one driving the Tetris instance). A listener which throws is logged and skipped, so it can't break the game or the other listeners.
+ */
+public class EventBus {
+    private static final Logger LOGGER = Logger.getLogger(EventBus.class.getName());
+
+    protected CopyOnWriteArrayList<IGameEventListener> listeners;
+    protected GameEvent[] ring;
+    protected int mask;
+    protected AtomicLong head, tail;
+    protected AtomicLong dropped;
+    protected volatile boolean running, sleeping;
+    protected Thread consumer;
+
+    /**
+     * Constructor. Creates a synchronous bus.
+     */
+    public EventBus() {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.ring = null;
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Constructor. Creates an asynchronous bus and starts its dispatching thread.
+     * @param capacity Number of events which can be waiting for dispatch. It's rounded up to a power of two.
+     */
+    public EventBus(int capacity) {
+        int i, n = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.ring = new GameEvent[n];
+        for (i = 0; i < n; i++)
+            this.ring[i] = new GameEvent();
+        this.mask = n - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.running = true;
+        this.sleeping = false;
+        this.consumer = new Thread(new Runnable() {
+            public void run() {
+                dispatch();
+            }
+        }, "EventBus");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Registers a listener.
+     * @param l Listener to be added.
+     */
+    public void attach(IGameEventListener l) {
+        this.listeners.add(l);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param l Listener to be removed.
+     */
+    public void detach(IGameEventListener l) {
+        this.listeners.remove(l);
+    }
+
+    /**
+     * @return True if at least one listener is attached, i.e. if events are worth building.
+     */
+    public boolean hasListeners() {
+        return !this.listeners.isEmpty();
+    }
+
+    public boolean isAsync() {
+        return this.ring != null;
+    }
+
+    /**
+     * @return Number of events dropped because the ring buffer was full.
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Publishes an event. In asynchronous mode the event is copied, so the caller can reuse it immediately.
+     * @param e The event.
+     * @return False if the event has been dropped.
+     */
+    public boolean publish(GameEvent e) {
+        long t;
+
+        if (this.ring == null) {
+            this.deliver(e);
+            return true;
+        }
+
+        t = this.tail.get();
+        if (t - this.head.get() > this.mask) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        this.ring[(int)t & this.mask].set(e);
+        // A full store, so the consumer either sees the new tail or is seen sleeping.
+        this.tail.set(t + 1);
+        if (this.sleeping)
+            LockSupport.unpark(this.consumer);
+
+        return true;
+    }
+
+    /**
+     * Body of the dispatching thread: delivers the buffered events in order, parking while the ring buffer is empty.
+     */
+    private void dispatch() {
+        long h;
+
+        while (this.running) {
+            h = this.head.get();
+            if (h == this.tail.get()) {
+                this.sleeping = true;
+                if (h == this.tail.get() && this.running)
+                    LockSupport.parkNanos(this, 10000000L);
+                this.sleeping = false;
+                continue;
+            }
+            this.deliver(this.ring[(int)h & this.mask]);
+            this.head.lazySet(h + 1);
+        }
+    }
+
+    /**
+     * Delivers an event to every listener.
+     * @param e The event.
+     */
+    private void deliver(GameEvent e) {
+        for (IGameEventListener l : this.listeners)
+            try {
+                l.exec(e);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Listener failed on " + e.type, ex);
+            }
+    }
+
+    /**
+     * Stops the dispatching thread, after it delivers the events which are already buffered. It has no effect on a synchronous bus.
+     * @throws InterruptedException If the calling thread is interrupted while waiting.
+     */
+    public void close() throws InterruptedException {
+        if (this.ring == null)
+            return;
+
+        while (this.consumer.isAlive() && this.head.get() != this.tail.get()) {
+            LockSupport.unpark(this.consumer);
+            Thread.sleep(1);
+        }
+        this.running = false;
+        LockSupport.unpark(this.consumer);
+        this.consumer.join();
+    }
+}
@@ -0,0 +1,56 @@
+package Tetris;
+
+import java.util.Arrays;
+
+/**
+ * Game event published on an EventBus. No encapsulation is provided: instances are reused (by the Tetris which publishes them and by the slots of an asynchronous EventBus), so listeners must copy what they want to keep.
+ * Only the fields related to the event type are meaningful.
+ */
+public class GameEvent {
+    public enum Event_t {SPAWN, LOCK, LINES_CLEARED, LEVEL_UP, GAME_OVER};
+
+    public Event_t type;
+    public long sequence;
+    public Tetromino.Type_t piece;
+    public int rotation;
+    public int x, y;
+    public boolean dropped;
+    public int lines;
+    public int[] rows = new int[4];
+    public int level;
+    public long score;
+
+    /**
+     * Copies another event into this one.
+     * @param e The event to be copied.
+     */
+    public void set(GameEvent e) {
+        this.type = e.type;
+        this.sequence = e.sequence;
+        this.piece = e.piece;
+        this.rotation = e.rotation;
+        this.x = e.x;
+        this.y = e.y;
+        this.dropped = e.dropped;
+        this.lines = e.lines;
+        System.arraycopy(e.rows, 0, this.rows, 0, 4);
+        this.level = e.level;
+        this.score = e.score;
+    }
+
+    @Override
+    public String toString() {
+        switch (this.type) {
+            case SPAWN:
+                return "#" + this.sequence + " SPAWN " + this.piece + " at (" + this.x + ", " + this.y + ")";
+            case LOCK:
+                return "#" + this.sequence + " LOCK " + this.piece + "/" + this.rotation + " at (" + this.x + ", " + this.y + ")" + (this.dropped? " dropped": "");
+            case LINES_CLEARED:
+                return "#" + this.sequence + " LINES_CLEARED " + Arrays.toString(Arrays.copyOf(this.rows, this.lines)) + " score " + this.score;
+            case LEVEL_UP:
+                return "#" + this.sequence + " LEVEL_UP " + this.level;
+            default:
+                return "#" + this.sequence + " GAME_OVER score " + this.score;
+        }
+    }
+}
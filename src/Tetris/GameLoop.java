@@ -0,0 +1,49 @@
+package Tetris;
+
+/**
+ * Game loop running on a dedicated thread: an Engine which also draws the frames, between its steps, so the renderer always sees a consistent game.
+ * The game speed doesn't depend on rendering (see Engine) and an input is applied within a step and drawn within a frame.
+ */
+public class GameLoop extends Engine {
+    protected IRenderer renderer;
+    protected long frame;
+    protected long nextFrame;
+
+    /**
+     * Constructor. Held keys are repeated with the default DAS and ARR.
+     * @param s The game to be played.
+     * @param renderer Renderer of the frames.
+     * @param fps Maximum number of frames per second.
+     * @param metrics Metrics of the steps (as ticks), key event delays (as inputs), frames (as paints) and step lateness (as timer jitter).
+     */
+    public GameLoop(Simulation s, IRenderer renderer, int fps, Metrics metrics) {
+        super(s, metrics);
+        this.renderer = renderer;
+        this.frame = 1000000000L / fps;
+        this.nextFrame = System.nanoTime();
+    }
+
+    public AutoShift getAutoShift() {
+        return this.simulation.getAutoShift();
+    }
+
+    /**
+     * Draws a frame if it's due, or if the game is over.
+     * @param now Timestamp of the iteration, from System.nanoTime().
+     * @param next Timestamp of the next step.
+     * @return Timestamp of the next step or of the next frame, whichever comes first.
+     */
+    @Override
+    protected long render(long now, long next) {
+        long t;
+
+        if (now - this.nextFrame >= 0 || this.simulation.isGameOver()) {
+            t = this.metrics.start();
+            this.renderer.exec(this.tetris);
+            this.metrics.paint(t);
+            this.nextFrame = now + this.frame;
+        }
+
+        return Math.min(next, this.nextFrame);
+    }
+}
@@ -19,11 +19,15 @@ public class GameOver implements IGameOver {
     }
     
     /**
-     * Stops the game and displays a game over message.
+     * Stops the game and displays a game over message. The modal dialog is shown later on the event dispatch thread, so the game thread isn't blocked until it's dismissed.
      */
     public void exec() {
         this.t1.stop();
         this.t2.stop();
-        JOptionPane.showMessageDialog(null, "Game over");
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                JOptionPane.showMessageDialog(null, "Game over");
+            }
+        });
     }
 }
@@ -0,0 +1,47 @@
+package Tetris;
+
+/**
+ * Final state of a single headless game. No encapsulation is provided.
+ */
+public class GameResult {
+    public long seed;
+    public long score;
+    public int lines;
+    public int level;
+    public long ticks;
+    public int[] statistics;
+
+    /**
+     * Constructor. Copies the final state of a game.
+     * @param seed Seed of the game.
+     * @param s The Simulation which played the game.
+     */
+    public GameResult(long seed, Simulation s) {
+        Tetris t = s.getTetris();
+
+        this.seed = seed;
+        this.score = t.getScore();
+        this.lines = t.getLines();
+        this.level = t.getLevel();
+        this.ticks = s.getTicks();
+        this.statistics = t.getStatistics().clone();
+    }
+
+    /**
+     * Constructor.
+     * @param seed Seed of the game.
+     * @param score Final score.
+     * @param lines Lines cleared.
+     * @param level Final level.
+     * @param ticks Duration of the game.
+     * @param statistics Number of tetrominoes of each type. It isn't copied.
+     */
+    public GameResult(long seed, long score, int lines, int level, long ticks, int[] statistics) {
+        this.seed = seed;
+        this.score = score;
+        this.lines = lines;
+        this.level = level;
+        this.ticks = ticks;
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,352 @@
+package Tetris;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many headless games for remote players and bots over TCP (see Protocol). A single thread multiplexes every connection with a NIO selector and drives every game from one shared tick,
+ * each game being a Simulation advanced by the tick period, so no timer or thread is needed per game. Inputs are applied as soon as they're read and answered with a STATE frame.
+ */
+public class GameServer implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(GameServer.class.getName());
+
+    /**
+     * Default period of the shared tick, in milliseconds.
+     */
+    public static final int TICK = 10;
+
+    /**
+     * A connection and its game.
+     */
+    protected static class Session {
+        public SocketChannel channel;
+        public ByteBuffer in, out;
+        public Simulation simulation;
+        public long[] rows;
+        public long sentHash;
+        public int sentX, sentY, sentRotation;
+        public long sentScore;
+        public boolean synced;
+        public int ack;
+        public boolean over;
+
+        public Session(SocketChannel channel) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(1024);
+            this.out = ByteBuffer.allocate(16384);
+        }
+    }
+
+    protected int tick;
+    protected Selector selector;
+    protected ServerSocketChannel server;
+    protected ArrayList<Session> sessions;
+    protected Histogram ticks;
+    protected volatile boolean running;
+
+    /**
+     * Constructor. Binds the listening socket.
+     * @param port TCP port, 0 for any free port.
+     * @param tick Period of the shared tick, in milliseconds.
+     * @throws IOException If the socket can't be bound.
+     */
+    public GameServer(int port, int tick) throws IOException {
+        this.tick = tick;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(port));
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.sessions = new ArrayList<>();
+        this.ticks = new Histogram();
+        this.running = true;
+    }
+
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * @return Number of connected sessions. It's only accurate on the server thread.
+     */
+    public int getSessions() {
+        return this.sessions.size();
+    }
+
+    /**
+     * @return Histogram of the time needed to advance every game by one tick, in nanoseconds.
+     */
+    public Histogram getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Stops the server thread, which closes every connection.
+     */
+    public void stop() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    /**
+     * Body of the server thread.
+     */
+    public void run() {
+        long period = this.tick * 1000000L;
+        long next = System.nanoTime() + period;
+        long now;
+        Iterator<SelectionKey> iter;
+        SelectionKey k;
+
+        try {
+            while (this.running) {
+                now = System.nanoTime();
+                this.selector.select(Math.max(1, (next - now) / 1000000L));
+
+                for (iter = this.selector.selectedKeys().iterator(); iter.hasNext();) {
+                    k = iter.next();
+                    iter.remove();
+                    try {
+                        if (!k.isValid())
+                            continue;
+                        if (k.isAcceptable())
+                            this.accept();
+                        else {
+                            if (k.isReadable())
+                                this.read(k);
+                            if (k.isValid() && k.isWritable())
+                                this.flush(k, (Session)k.attachment());
+                        }
+                    } catch (IOException ex) {
+                        this.close(k);
+                    }
+                }
+
+                now = System.nanoTime();
+                if (now - next >= 0) {
+                    this.update();
+                    this.ticks.record(System.nanoTime() - now);
+                    // After a long stall the games slow down instead of catching up all at once.
+                    next = (now - next > 10 * period)? now + period: next + period;
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, null, ex);
+        } finally {
+            for (SelectionKey key : this.selector.keys())
+                try {
+                    key.channel().close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, null, ex);
+                }
+            try {
+                this.selector.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Accepts a pending connection.
+     * @throws IOException If the connection can't be configured.
+     */
+    private void accept() throws IOException {
+        SocketChannel ch = this.server.accept();
+        Session s;
+
+        if (ch == null)
+            return;
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+        s = new Session(ch);
+        ch.register(this.selector, SelectionKey.OP_READ, s);
+        this.sessions.add(s);
+    }
+
+    /**
+     * Closes a connection and forgets its session.
+     * @param k Key of the connection.
+     */
+    private void close(SelectionKey k) {
+        this.sessions.remove((Session)k.attachment());
+        k.cancel();
+        try {
+            k.channel().close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * Reads and applies every complete frame received on a connection.
+     * @param k Key of the connection.
+     * @throws IOException If the connection is closed or broken, or a frame is invalid.
+     */
+    private void read(SelectionKey k) throws IOException {
+        Session s = (Session)k.attachment();
+        ByteBuffer b = s.in;
+        int length, end;
+
+        if (s.channel.read(b) < 0)
+            throw new IOException("Connection closed");
+        b.flip();
+        while (b.remaining() >= 2 && b.remaining() >= 2 + (length = b.getShort(b.position()) & 0xffff)) {
+            end = b.position() + 2 + length;
+            b.position(b.position() + 2);
+            // The payload must match its type exactly, otherwise it would be read past the end of the frame.
+            if (length == 0)
+                throw new IOException("Invalid frame");
+            switch (b.get()) {
+                case Protocol.HELLO:
+                    if (length != Protocol.HELLO_SIZE)
+                        throw new IOException("Invalid frame");
+                    this.start(s, b.get() & 0xff, b.get() & 0xff, b.get() & 0xff, b.getLong());
+                    break;
+                case Protocol.INPUT:
+                    if (length != Protocol.INPUT_SIZE)
+                        throw new IOException("Invalid frame");
+                    this.input(s, b.get(), b.get() != 0, b.getInt());
+                    break;
+                default:
+                    throw new IOException("Invalid frame");
+            }
+            b.position(end);
+        }
+        b.compact();
+        if (!b.hasRemaining())
+            throw new IOException("Frame too long");
+
+        this.flush(k, s);
+    }
+
+    /**
+     * Starts a new game on a session.
+     * @param s The session.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     * @param seed Seed of the tetromino sequence.
+     * @throws IOException If the size is invalid.
+     */
+    private void start(Session s, int w, int h, int level, long seed) throws IOException {
+        if (w < 4 || w > Protocol.MAX_WIDTH || h < 4 || h > Protocol.MAX_HEIGHT)
+            throw new IOException("Invalid size: " + w + "x" + h);
+
+        s.simulation = new Simulation(new Tetris(w, h, level, seed));
+        s.rows = new long[h];
+        s.ack = 0;
+        s.over = false;
+        s.synced = false;
+        this.send(s, true);
+    }
+
+    /**
+     * Queues an input in the Simulation of the session. It's applied by the next step of the game, with the same DAS and ARR as the other front ends.
+     * @param s The session.
+     * @param key The key.
+     * @param pressed True if the key is pressed.
+     * @param seq Sequence number of the input.
+     * @throws IOException If the key is invalid or no game has been started.
+     */
+    private void input(Session s, byte key, boolean pressed, int seq) throws IOException {
+        Simulation.Key_t k;
+
+        if (s.simulation == null || key < 0 || key >= Simulation.Key_t.values().length)
+            throw new IOException("Invalid input");
+
+        k = Simulation.Key_t.values()[key];
+        s.ack = seq;
+        if (!s.over) {
+            if (pressed)
+                s.simulation.press(k);
+            else
+                s.simulation.release(k);
+        }
+        this.send(s, true);
+    }
+
+    /**
+     * Advances every game by one tick and sends the games which changed.
+     */
+    private void update() {
+        SelectionKey k;
+
+        for (Session s : this.sessions)
+            if (s.simulation != null && !s.over) {
+                s.simulation.advance(this.tick);
+                this.send(s, false);
+                k = s.channel.keyFor(this.selector);
+                try {
+                    this.flush(k, s);
+                } catch (IOException ex) {
+                    // The connection is closed by the next select().
+                    k.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            }
+    }
+
+    /**
+     * Queues a STATE frame if the game changed (or unconditionally), followed by a GAME_OVER frame once the game is over. The field is only sent if its hash changed.
+     * A STATE frame which doesn't fit in the output buffer is skipped: the next one carries a newer state anyway.
+     * @param s The session.
+     * @param always True if the frame must be sent even if the game didn't change, to acknowledge an input.
+     */
+    private void send(Session s, boolean always) {
+        Tetris t = s.simulation.getTetris();
+        boolean field = !s.synced || t.hash() != s.sentHash;
+
+        if (!always && !field && t.getX() == s.sentX && t.getY() == s.sentY && t.getTetromino().getRotation() == s.sentRotation && t.getScore() == s.sentScore && !s.simulation.isGameOver())
+            return;
+
+        if (s.out.remaining() >= Protocol.STATE_SIZE + (field? 8 * t.getHeight(): 0) + 11) {
+            if (field)
+                t.getField(s.rows);
+            Protocol.putState(s.out, t, s.ack, field? s.rows: null);
+            s.sentHash = t.hash();
+            s.synced = true;
+            s.sentX = t.getX();
+            s.sentY = t.getY();
+            s.sentRotation = t.getTetromino().getRotation();
+            s.sentScore = t.getScore();
+            if (s.simulation.isGameOver()) {
+                Protocol.putGameOver(s.out, t.getScore());
+                s.over = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the queued frames of a session, waiting for the channel to be writable if they don't fit in the socket buffer.
+     * @param k Key of the connection.
+     * @param s The session.
+     * @throws IOException If the connection is broken.
+     */
+    private void flush(SelectionKey k, Session s) throws IOException {
+        s.out.flip();
+        s.channel.write(s.out);
+        s.out.compact();
+        k.interestOps(s.out.position() > 0? SelectionKey.OP_READ | SelectionKey.OP_WRITE: SelectionKey.OP_READ);
+    }
+
+    /**
+     * Runs a server.
+     * @param args Optional TCP port (default 7777) and tick period in milliseconds (default TICK).
+     * @throws IOException If the socket can't be bound.
+     */
+    public static void main(String args[]) throws IOException {
+        GameServer s = new GameServer((args.length > 0)? Integer.parseInt(args[0]): 7777, (args.length > 1)? Integer.parseInt(args[1]): TICK);
+
+        LOGGER.info("Listening on port " + s.getPort());
+        s.run();
+    }
+}
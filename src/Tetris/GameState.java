@@ -0,0 +1,36 @@
+package Tetris;
+
+/**
+ * Snapshot of a game, filled by Tetris.save() and applied by Tetris.restore(). No encapsulation is provided.
+ * Every field has a fixed size (a 10x20 game takes about 300 bytes) and tetrominoes are shared flyweights, so an instance can be reused for any number of snapshots of the same game without allocating.
+ * Listeners, the event bus and the replay recorder are not part of the snapshot.
+ */
+public class GameState {
+    public int w, h;
+    public long[] rows;
+    public int[] heights;
+    public long hash;
+    public Tetromino current, next;
+    public int x, y;
+    public long score;
+    public int level;
+    public int lines;
+    public int consecutiveLinesCleared;
+    public boolean dropping;
+    public int droppingHeight;
+    public int[] statistics;
+    public long[] generator;
+
+    /**
+     * Constructor. Allocates an empty snapshot for a game.
+     * @param t The game.
+     */
+    public GameState(Tetris t) {
+        this.w = t.getWidth();
+        this.h = t.getHeight();
+        this.rows = t.createImageBuffer();
+        this.heights = new int[this.w];
+        this.statistics = new int[7];
+        this.generator = new long[IPieceGenerator.STATE_SIZE];
+    }
+}
@@ -0,0 +1,88 @@
+package Tetris;
+
+/**
+ * Immutable view of a game, published by an Engine after each batch of changes. Any thread can read it without locking, and it never changes once published:
+ * readers always see a consistent game, even while the engine thread goes on.
+ */
+public final class GameView {
+    public final long version;
+    public final long time;
+    public final int w, h, words;
+    public final Tetromino current;
+    public final Tetromino.Type_t next;
+    public final int x, y, ghostY;
+    public final long score;
+    public final int lines;
+    public final int level;
+    public final long hash;
+    public final boolean gameOver;
+    private final long[] field;
+
+    /**
+     * Constructor. Copies the state of a game; it must be called by the thread which owns the game.
+     * @param t The game.
+     * @param version Sequence number of the view.
+     * @param time Logical time of the game, in milliseconds.
+     * @param gameOver True if the game is over.
+     */
+    GameView(Tetris t, long version, long time, boolean gameOver) {
+        this.version = version;
+        this.time = time;
+        this.w = t.getWidth();
+        this.h = t.getHeight();
+        this.words = t.getImageWords();
+        this.current = t.getTetromino();
+        this.next = t.getNext();
+        this.x = t.getX();
+        this.y = t.getY();
+        this.ghostY = t.getGhostY();
+        this.score = t.getScore();
+        this.lines = t.getLines();
+        this.level = t.getLevel();
+        this.hash = t.hash();
+        this.gameOver = gameOver;
+        this.field = t.createImageBuffer();
+        t.getField(this.field);
+    }
+
+    /**
+     * @param x Column.
+     * @param y Row (0 is the bottom one).
+     * @return True if the cell holds a locked block.
+     */
+    public boolean isSet(int x, int y) {
+        return (this.field[y * this.words + (x >> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Copies a row of the playing field, without the current tetromino.
+     * @param y Row (0 is the bottom one).
+     * @param i Index of the 64 bit word within the row.
+     * @return The word: bit j is column 64 * i + j.
+     */
+    public long getRow(int y, int i) {
+        return this.field[y * this.words + i];
+    }
+
+    /**
+     * Copies the playing field, without the current tetromino, into a buffer with the layout of Tetris.getField(long[]).
+     * @param buffer Buffer of at least words * h longs.
+     */
+    public void getField(long[] buffer) {
+        System.arraycopy(this.field, 0, buffer, 0, this.field.length);
+    }
+
+    /**
+     * Copies the playing field and the current tetromino into a buffer with the layout of Tetris.getImage(long[]).
+     * @param buffer Buffer of at least words * h longs.
+     */
+    public void getImage(long[] buffer) {
+        int px;
+
+        System.arraycopy(this.field, 0, buffer, 0, this.field.length);
+        for (Point p : this.current.get()) {
+            px = this.x + p.x;
+            buffer[(this.y - p.y) * this.words + (px >> 6)] |= 1L << px;
+        }
+    }
+}
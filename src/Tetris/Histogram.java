@@ -0,0 +1,131 @@
+package Tetris;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with logarithmic buckets, in the spirit of HdrHistogram: every power of two is split into 16 linear sub-buckets, so any value is stored with a relative error below 1/16,
+ * from nanoseconds to hours, in a fixed array of counters. Recording is a single atomic increment and never allocates, so it can be called on every tick.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    protected AtomicLongArray counts;
+    protected volatile long max;
+
+    /**
+     * Constructor.
+     */
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = 0;
+    }
+
+    /**
+     * Computes the bucket of a value.
+     * @param v The value. It must not be negative.
+     * @return Index of the bucket.
+     */
+    private static int index(long v) {
+        int e;
+
+        if (v < SUB)
+            return (int)v;
+        e = 63 - Long.numberOfLeadingZeros(v);
+
+        return (e - SUB_BITS + 1) * SUB + (int)((v >>> (e - SUB_BITS)) & (SUB - 1));
+    }
+
+    /**
+     * Computes the smallest value stored in a bucket.
+     * @param i Index of the bucket.
+     * @return The value.
+     */
+    private static long lowest(int i) {
+        if (i < SUB)
+            return i;
+
+        return (long)(SUB + i % SUB) << (i / SUB - 1);
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     * @param v The value.
+     */
+    public void record(long v) {
+        if (v < 0)
+            v = 0;
+        this.counts.incrementAndGet(index(v));
+        // A racy maximum: a concurrent record may be lost, which is acceptable for monitoring.
+        if (v > this.max)
+            this.max = v;
+    }
+
+    public long getCount() {
+        long ret = 0;
+        int i;
+
+        for (i = 0; i < BUCKETS; i++)
+            ret += this.counts.get(i);
+
+        return ret;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Computes a percentile.
+     * @param p The percentile, between 0 and 100.
+     * @return The middle of the bucket containing the percentile (at most the maximum value), or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double p) {
+        long total = this.getCount();
+        long rank, seen = 0;
+        int i;
+
+        if (total == 0)
+            return 0;
+        rank = Math.max(1, (long)Math.ceil(total * p / 100.0));
+        for (i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank)
+                return Math.min(this.max, (lowest(i) + ((i + 1 < BUCKETS)? lowest(i + 1): Long.MAX_VALUE)) >>> 1);
+        }
+
+        return this.max;
+    }
+
+    /**
+     * Computes the mean, using the middle of each bucket.
+     * @return The mean, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        double sum = 0;
+        long c, total = 0;
+        int i;
+
+        for (i = 0; i < BUCKETS - 1; i++) {
+            c = this.counts.get(i);
+            if (c != 0) {
+                sum += c * ((lowest(i) + lowest(i + 1)) / 2.0);
+                total += c;
+            }
+        }
+
+        return (total == 0)? 0: sum / total;
+    }
+
+    /**
+     * Clears every bucket. Values recorded concurrently may be lost.
+     */
+    public void reset() {
+        int i;
+
+        for (i = 0; i < BUCKETS; i++)
+            this.counts.set(i, 0);
+        this.max = 0;
+    }
+}
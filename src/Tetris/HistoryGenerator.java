@@ -0,0 +1,38 @@
+package Tetris;
+
+/**
+ * IPieceGenerator implementation, similar to the NES one. It rolls an eight sided die: if the result is the eighth face or repeats the previous tetromino, it rolls again a seven sided die and keeps the result.
+ */
+public class HistoryGenerator implements IPieceGenerator {
+    protected SplitMix64 r;
+    protected int previous;
+
+    /**
+     * Constructor.
+     * @param seed Seed of the sequence.
+     */
+    public HistoryGenerator(long seed) {
+        this.r = new SplitMix64(seed);
+        this.previous = 7;
+    }
+
+    public Tetromino.Type_t next() {
+        int ret = this.r.nextInt(8);
+
+        if (ret == 7 || ret == this.previous)
+            ret = this.r.nextInt(7);
+        this.previous = ret;
+
+        return Tetromino.typeOf(ret);
+    }
+
+    public void saveState(long[] dst) {
+        dst[0] = this.r.getState();
+        dst[1] = this.previous;
+    }
+
+    public void loadState(long[] src) {
+        this.r.setState(src[0]);
+        this.previous = (int)src[1];
+    }
+}
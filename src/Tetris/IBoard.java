@@ -0,0 +1,100 @@
+package Tetris;
+
+/**
+ * Playing field interface. Row 0 is the bottom of the field and column 0 is its left edge.
+ */
+public interface IBoard {
+    /**
+     * @return Width of the playing field.
+     */
+    public int getWidth();
+
+    /**
+     * @return Height of the playing field.
+     */
+    public int getHeight();
+
+    /**
+     * @return Number of 64 bit words used by each row in copyRows.
+     */
+    public int getWords();
+
+    /**
+     * Checks a single block.
+     * @param x Column of the block.
+     * @param y Row of the block.
+     * @return True if the block is occupied.
+     */
+    public boolean get(int x, int y);
+
+    /**
+     * Occupies a single block.
+     * @param x Column of the block.
+     * @param y Row of the block.
+     */
+    public void set(int x, int y);
+
+    /**
+     * Gets the height of a column, which is kept up to date incrementally.
+     * @param x The column.
+     * @return One plus the row of the highest occupied block of the column, 0 if the column is empty.
+     */
+    public int getColumnHeight(int x);
+
+    /**
+     * Checks whether a group of blocks on the same row overlaps the field.
+     * @param y Row of the blocks.
+     * @param mask Blocks to be checked, bit i being column x + i. They must lie inside the field.
+     * @param x Column of bit 0.
+     * @return True if at least one of the blocks is occupied.
+     */
+    public boolean intersects(int y, long mask, int x);
+
+    /**
+     * Occupies a group of blocks on the same row.
+     * @param y Row of the blocks.
+     * @param mask Blocks to be occupied, bit i being column x + i. They must lie inside the field.
+     * @param x Column of bit 0.
+     */
+    public void or(int y, long mask, int x);
+
+    /**
+     * Checks if a line is full and needs to be cleared.
+     * @param y The line to be checked.
+     * @return True if the line is full.
+     */
+    public boolean isFull(int y);
+
+    /**
+     * Clears some full lines from the field in a single pass, shifting the lines above them down.
+     * @param lines Indices of the lines to be cleared, in ascending order.
+     * @param n Number of lines to be cleared (only the first n elements of lines are read).
+     */
+    public void removeLines(int[] lines, int n);
+
+    /**
+     * Copies the whole field into a buffer, bottom row first. Each row takes getWords() longs, bit i of a row being column i.
+     * @param dst Buffer of at least getWords() * getHeight() longs. Its previous content is overwritten.
+     */
+    public void copyRows(long[] dst);
+
+    /**
+     * Gets the Zobrist hash of the field (see Zobrist), which is updated as blocks are occupied and lines are cleared.
+     * @return The hash.
+     */
+    public long hash();
+
+    /**
+     * Copies the height of every column.
+     * @param dst Buffer of at least getWidth() ints. Element x is getColumnHeight(x).
+     */
+    public void copyHeights(int[] dst);
+
+    /**
+     * Replaces the whole field with a copy previously saved with copyRows(), copyHeights() and hash().
+     * @param rows The rows, in the copyRows() format.
+     * @param heights The column heights.
+     * @param hash The hash.
+     */
+    public void load(long[] rows, int[] heights, long hash);
+}
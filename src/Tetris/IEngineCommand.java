@@ -0,0 +1,12 @@
+package Tetris;
+
+/**
+ * Engine command interface. Implements the Command Pattern.
+ */
+public interface IEngineCommand {
+    /**
+     * Mutates the game. It's called by the engine thread, the only one which may touch the game.
+     * @param t The game. It must not be kept or shared with other threads.
+     */
+    public void exec(Tetris t);
+}
@@ -0,0 +1,12 @@
+package Tetris;
+
+/**
+ * Game event interface. Implements the Command Pattern.
+ */
+public interface IGameEventListener {
+    /**
+     * Does something when a game event is published.
+     * @param e The event. It's reused by the next event, so it must not be stored.
+     */
+    public void exec(GameEvent e);
+}
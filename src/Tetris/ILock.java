@@ -0,0 +1,12 @@
+package Tetris;
+
+/**
+ * Lock interface. Implements the Command Pattern.
+ */
+public interface ILock {
+    /**
+     * Does something when a tetromino is locked in place.
+     * @param r The lock outcome. It's reused by the next lock, so it must not be stored.
+     */
+    public void exec(LockResult r);
+}
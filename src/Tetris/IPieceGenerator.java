@@ -0,0 +1,29 @@
+package Tetris;
+
+/**
+ * Tetromino sequence interface. Implementations must be deterministic: the same seed always yields the same sequence.
+ */
+public interface IPieceGenerator {
+    /**
+     * Number of longs written by saveState().
+     */
+    public static final int STATE_SIZE = 2;
+
+    /**
+     * Generates the next tetromino.
+     * @return Type of the tetromino.
+     */
+    public Tetromino.Type_t next();
+
+    /**
+     * Saves the whole state of the generator, so the sequence can be resumed with loadState().
+     * @param dst Destination, of at least STATE_SIZE elements.
+     */
+    public void saveState(long[] dst);
+
+    /**
+     * Restores a state saved by saveState() on a generator of the same class.
+     * @param src The saved state.
+     */
+    public void loadState(long[] src);
+}
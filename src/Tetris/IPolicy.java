@@ -0,0 +1,12 @@
+package Tetris;
+
+/**
+ * Input policy interface. Implements the Command Pattern: it generates the inputs of a headless game.
+ */
+public interface IPolicy {
+    /**
+     * Does something before each tick of a Simulation, usually pressing or releasing keys.
+     * @param s The Simulation which is about to advance.
+     */
+    public void exec(Simulation s);
+}
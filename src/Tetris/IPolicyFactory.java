@@ -0,0 +1,13 @@
+package Tetris;
+
+/**
+ * Input policy factory interface. It creates a policy for each game of a batch, so stateful policies never get shared between threads.
+ */
+public interface IPolicyFactory {
+    /**
+     * Creates the policy for a single game.
+     * @param seed Seed of the game which will be played.
+     * @return The input policy.
+     */
+    public IPolicy create(long seed);
+}
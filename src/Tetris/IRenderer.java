@@ -0,0 +1,12 @@
+package Tetris;
+
+/**
+ * Renderer interface. Implements the Command Pattern.
+ */
+public interface IRenderer {
+    /**
+     * Draws a frame. It's called by the thread which updates the game, so the game can be read safely.
+     * @param t The game to be drawn.
+     */
+    public void exec(Tetris t);
+}
@@ -0,0 +1,14 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Spectator interface. Implements the Command Pattern.
+ */
+public interface ISpectator {
+    /**
+     * Does something with a spectator frame (e.g. writes it to a socket).
+     * @param frame The encoded frame, shared by every spectator: its content must not be modified and it's reused by the next frame.
+     */
+    public void exec(ByteBuffer frame);
+}
@@ -0,0 +1,131 @@
+package Tetris;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free queue of timestamped key events, between a single producer thread (e.g. the event dispatch thread) and a single consumer thread (the one which updates the game).
+ * Events are stored in a preallocated ring, so nothing is allocated per event. The consumer applies them at the start of each tick, in the order they were recorded, which makes the game
+ * (and thus replays and network sessions) see the same input sequence whatever the timing of the threads.
+ */
+public class InputQueue {
+    private static final Simulation.Key_t[] KEYS = Simulation.Key_t.values();
+
+    protected long[] times;
+    protected byte[] events;
+    protected int mask;
+    protected AtomicLong head, tail;
+    protected AtomicLong dropped;
+
+    /**
+     * Constructor.
+     * @param capacity Maximum number of pending events. It's rounded up to a power of two.
+     */
+    public InputQueue(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+
+        this.times = new long[n];
+        this.events = new byte[n];
+        this.mask = n - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    /**
+     * Constructor. Room for 256 pending events is more than a human can type between two ticks.
+     */
+    public InputQueue() {
+        this(256);
+    }
+
+    /**
+     * Records a key press. Must only be called by the producer thread.
+     * @param k The key.
+     * @return False if the queue is full and the event has been dropped.
+     */
+    public boolean press(Simulation.Key_t k) {
+        return this.offer(k, true, System.nanoTime());
+    }
+
+    /**
+     * Records a key release. Must only be called by the producer thread.
+     * @param k The key.
+     * @return False if the queue is full and the event has been dropped.
+     */
+    public boolean release(Simulation.Key_t k) {
+        return this.offer(k, false, System.nanoTime());
+    }
+
+    /**
+     * Records a key event. Must only be called by the producer thread.
+     * @param k The key.
+     * @param pressed True for a press, false for a release.
+     * @param time Timestamp of the event, from System.nanoTime() or a logical clock.
+     * @return False if the queue is full and the event has been dropped.
+     */
+    public boolean offer(Simulation.Key_t k, boolean pressed, long time) {
+        long t = this.tail.get();
+        int i = (int)t & this.mask;
+
+        if (t - this.head.get() > this.mask) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+
+        this.times[i] = time;
+        this.events[i] = (byte)(k.ordinal() << 1 | ((pressed)? 1: 0));
+        this.tail.lazySet(t + 1); // Publishes the slot to the consumer.
+
+        return true;
+    }
+
+    /**
+     * Applies the pending events recorded up to a given time. Must only be called by the consumer thread.
+     * @param until Events recorded after this timestamp (on the clock of offer()) are left for the next tick.
+     * @param s The key handler.
+     * @param metrics If not null, the delay between each event and its application is recorded as an input.
+     * @return Number of events applied.
+     */
+    public int drain(long until, AutoShift s, Metrics metrics) {
+        long h = this.head.get();
+        long t = this.tail.get();
+        int n = 0;
+        int i;
+
+        for (; h != t; h++, n++) {
+            i = (int)h & this.mask;
+            if (this.times[i] - until > 0)
+                break;
+            if ((this.events[i] & 1) != 0)
+                s.press(KEYS[this.events[i] >> 1]);
+            else
+                s.release(KEYS[this.events[i] >> 1]);
+            if (metrics != null && metrics.isEnabled())
+                metrics.input(this.times[i]);
+        }
+        this.head.lazySet(h); // Frees the slots for the producer.
+
+        return n;
+    }
+
+    /**
+     * Discards the pending events. Must only be called by the consumer thread.
+     */
+    public void clear() {
+        this.head.lazySet(this.tail.get());
+    }
+
+    /**
+     * @return Number of pending events.
+     */
+    public int size() {
+        return (int)(this.tail.get() - this.head.get());
+    }
+
+    /**
+     * @return Number of events dropped because the queue was full.
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+}
@@ -22,7 +22,16 @@ public class LevelUp implements ILevelUp {
      * @param level The level which has been just reached.
      */
     public void exec(int level) {
-        this.t.setDelay((level < 20)? 1000 / level: 50);
+        this.t.setDelay(LevelUp.getDelay(level));
+    }
+    
+    /**
+     * Computes the playing speed for a level.
+     * @param level The level.
+     * @return Delay between two game updates, in milliseconds.
+     */
+    public static int getDelay(int level) {
+        return (level < 20)? 1000 / level: 50;
     }
     
 }
@@ -0,0 +1,267 @@
+package Tetris;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Load test of GameServer. It opens many bot connections from a single thread; every bot starts a game and sends a random input every few milliseconds, starting a new game after each game over.
+ * The latency of an input is the time between sending it and receiving the first STATE frame which acknowledges it.
+ * A bot whose socket is full skips its inputs until its queued frames have been written, as a real client would drop stale inputs.
+ */
+public class LoadClient {
+    private static final Simulation.Key_t[] KEYS = Simulation.Key_t.values();
+
+    /**
+     * A bot connection.
+     */
+    protected static class Bot {
+        public SocketChannel channel;
+        public SelectionKey key;
+        public ByteBuffer in, out;
+        public SplitMix64 random;
+        public int seq, acked;
+        public long[] sent;
+        public long nextInput;
+        public boolean hello;
+
+        public Bot(SocketChannel channel, long seed) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocate(16384);
+            this.out = ByteBuffer.allocate(1024);
+            this.random = new SplitMix64(seed);
+            this.sent = new long[256];
+        }
+    }
+
+    protected Bot[] bots;
+    protected Selector selector;
+    protected int delay;
+    protected Histogram latency;
+    protected long inputs, skipped, states, games, bytes;
+
+    /**
+     * Constructor. Connects the bots and starts their games.
+     * @param address Address of the server.
+     * @param n Number of bots.
+     * @param delay Delay between two inputs of the same bot, in milliseconds.
+     * @throws IOException If a connection fails.
+     */
+    public LoadClient(InetSocketAddress address, int n, int delay) throws IOException {
+        SocketChannel ch;
+        int i;
+
+        this.selector = Selector.open();
+        this.bots = new Bot[n];
+        this.delay = delay;
+        this.latency = new Histogram();
+        for (i = 0; i < n; i++) {
+            ch = SocketChannel.open(address);
+            ch.socket().setTcpNoDelay(true);
+            ch.configureBlocking(false);
+            this.bots[i] = new Bot(ch, SplitMix64.mix(i));
+            this.bots[i].key = ch.register(this.selector, SelectionKey.OP_READ, this.bots[i]);
+            this.bots[i].hello = true;
+            this.flush(this.bots[i]);
+        }
+    }
+
+    public Histogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Writes the queued frames of a bot, starting with a pending HELLO if there is room for it. If the socket doesn't take them all, the bot waits for it to become writable.
+     * @param b The bot.
+     * @throws IOException If the connection is broken.
+     */
+    private void flush(Bot b) throws IOException {
+        if (b.hello && b.out.remaining() >= 2 + Protocol.HELLO_SIZE) {
+            Protocol.putHello(b.out, 10, 20, 1, b.random.nextLong());
+            b.hello = false;
+        }
+
+        b.out.flip();
+        b.channel.write(b.out);
+        b.out.compact();
+        b.key.interestOps((b.out.position() > 0 || b.hello)? SelectionKey.OP_READ | SelectionKey.OP_WRITE: SelectionKey.OP_READ);
+    }
+
+    /**
+     * Runs the bots.
+     * @param seconds Duration of the test.
+     * @throws IOException If a connection is broken.
+     */
+    public void run(int seconds) throws IOException {
+        long end = System.nanoTime() + seconds * 1000000000L;
+        long period = this.delay * 1000000L;
+        long now = System.nanoTime();
+        Iterator<SelectionKey> iter;
+        SelectionKey k;
+
+        // Spread the inputs of the bots over the whole delay.
+        for (Bot b : this.bots)
+            b.nextInput = now + b.random.nextInt(this.delay * 1000) * 1000L;
+
+        while ((now = System.nanoTime()) - end < 0) {
+            this.selector.select(1);
+            for (iter = this.selector.selectedKeys().iterator(); iter.hasNext();) {
+                k = iter.next();
+                iter.remove();
+                if (k.isReadable())
+                    this.read((Bot)k.attachment());
+                if (k.isValid() && k.isWritable())
+                    this.flush((Bot)k.attachment());
+            }
+
+            now = System.nanoTime();
+            for (Bot b : this.bots)
+                if (now - b.nextInput >= 0) {
+                    if (b.out.remaining() < 2 + Protocol.INPUT_SIZE)
+                        this.skipped++;
+                    else {
+                        b.seq++;
+                        b.sent[b.seq & 255] = now;
+                        Protocol.putInput(b.out, KEYS[b.random.nextInt(KEYS.length)], b.random.nextInt(2) == 0, b.seq);
+                        this.flush(b);
+                        this.inputs++;
+                    }
+                    // A bot which fell behind skips its missed inputs instead of sending them in a burst.
+                    b.nextInput = (now - b.nextInput > period)? now + period: b.nextInput + period;
+                }
+        }
+    }
+
+    /**
+     * Reads the frames received by a bot.
+     * @param b The bot.
+     * @throws IOException If the connection is closed.
+     */
+    private void read(Bot b) throws IOException {
+        ByteBuffer in = b.in;
+        long now;
+        int n, length, end, ack;
+
+        if ((n = b.channel.read(in)) < 0)
+            throw new IOException("Connection closed");
+        this.bytes += n;
+        now = System.nanoTime();
+        in.flip();
+        while (in.remaining() >= 2 && in.remaining() >= 2 + (length = in.getShort(in.position()) & 0xffff)) {
+            end = in.position() + 2 + length;
+            switch (in.get(in.position() + 2)) {
+                case Protocol.STATE:
+                    ack = in.getInt(in.position() + 3);
+                    if (ack > b.acked) {
+                        this.latency.record(now - b.sent[ack & 255]);
+                        b.acked = ack;
+                    }
+                    this.states++;
+                    break;
+                case Protocol.GAME_OVER:
+                    this.games++;
+                    b.hello = true;
+                    this.flush(b);
+                    break;
+            }
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    /**
+     * Sends malformed frames to a server, each one on a new connection: an empty frame, then HELLO and INPUT frames shorter than their payload.
+     * The server must close each of these connections, and only them.
+     * @param address Address of the server.
+     * @return Number of connections closed by the server.
+     * @throws IOException If a connection fails.
+     */
+    public static int sendMalformed(InetSocketAddress address) throws IOException {
+        byte[][] frames = {
+            {0, 0},
+            {0, 3, Protocol.HELLO, 10, 20},
+            {0, 2, Protocol.INPUT, 0}
+        };
+        int ret = 0;
+        InputStream in;
+
+        for (byte[] f : frames)
+            try (Socket s = new Socket(address.getAddress(), address.getPort())) {
+                s.setSoTimeout(1000);
+                s.getOutputStream().write(f);
+                in = s.getInputStream();
+                if (in.read() < 0)
+                    ret++;
+            } catch (SocketTimeoutException ex) {
+                // Still open.
+            }
+
+        return ret;
+    }
+
+    /**
+     * Closes every connection.
+     */
+    public void close() {
+        for (Bot b : this.bots)
+            try {
+                b.channel.close();
+            } catch (IOException ex) {
+                // Nothing to do.
+            }
+        try {
+            this.selector.close();
+        } catch (IOException ex) {
+            // Nothing to do.
+        }
+    }
+
+    /**
+     * Runs a load test and prints the input latency percentiles.
+     * @param args Number of bots, duration in seconds, and optionally the host and port of the server. Without them, a server is started in this JVM.
+     * @throws IOException If a connection fails.
+     * @throws InterruptedException If the embedded server doesn't stop.
+     */
+    public static void main(String args[]) throws IOException, InterruptedException {
+        int n = (args.length > 0)? Integer.parseInt(args[0]): 1000;
+        int seconds = (args.length > 1)? Integer.parseInt(args[1]): 10;
+        GameServer server = null;
+        Thread thread = null;
+        InetSocketAddress address;
+        LoadClient c;
+        Histogram l;
+
+        if (args.length > 3)
+            address = new InetSocketAddress(args[2], Integer.parseInt(args[3]));
+        else {
+            server = new GameServer(0, GameServer.TICK);
+            thread = new Thread(server, "GameServer");
+            thread.start();
+            address = new InetSocketAddress("localhost", server.getPort());
+        }
+
+        System.out.println(String.format("%d of 3 malformed connections closed by the server", sendMalformed(address)));
+        c = new LoadClient(address, n, 100);
+        c.run(seconds);
+        c.close();
+        l = c.getLatency();
+        System.out.println(String.format("%d bots, %d inputs (%d skipped on a full socket), %d states, %d games over, %.1f KB/s received", n, c.inputs, c.skipped, c.states, c.games, c.bytes / 1024.0 / seconds));
+        System.out.println(String.format("input latency p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms",
+                l.getPercentile(50) / 1e6, l.getPercentile(99) / 1e6, l.getPercentile(99.9) / 1e6, l.getMax() / 1e6));
+        if (server != null) {
+            // The server updates every session on a single thread, so it keeps up as long as a tick takes less than its period.
+            System.out.println(String.format("server tick p50 %.3f ms, p99 %.3f ms (%d ms period), about %d sessions at p99 on its single thread",
+                    server.getTicks().getPercentile(50) / 1e6, server.getTicks().getPercentile(99) / 1e6, GameServer.TICK,
+                    (long)(n * GameServer.TICK * 1e6 / Math.max(server.getTicks().getPercentile(99), 1))));
+            server.stop();
+            thread.join();
+        }
+    }
+}
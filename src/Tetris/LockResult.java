@@ -0,0 +1,14 @@
+package Tetris;
+
+/**
+ * Outcome of a tetromino lock. No encapsulation is provided: a single instance is reused by its Tetris for every lock, so listeners must copy what they want to keep.
+ */
+public class LockResult {
+    public Tetromino.Type_t type;
+    public int rotation;
+    public int x, y;
+    public boolean dropped;
+    public int lines;
+    public int[] rows = new int[4];
+    public long score;
+}
@@ -0,0 +1,95 @@
+package Tetris;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import javax.swing.*;
+
+/**
+ * Game loop mode of MainFrame: the game runs on a GameLoop thread and is drawn on a TetrisCanvas, so neither depends on the Swing timers nor on the event dispatch thread. Keys are the same as MainFrame's.
+ */
+public class LoopFrame extends JFrame {
+    private TetrisCanvas canvas;
+    private GameLoop loop;
+    private Metrics metrics;
+    
+    /**
+     * Constructor. Creates the game, the canvas and the loop, which is started when the frame is shown.
+     */
+    public LoopFrame() {
+        super("Tetris");
+        
+        Tetris t = new Tetris(10, 20, 3, SplitMix64.mix(System.nanoTime())); // Initial level: 3.
+        
+        this.metrics = new Metrics();
+        this.metrics.attach(t);
+        this.canvas = new TetrisCanvas(t.getWidth(), t.getHeight());
+        this.loop = new GameLoop(new Simulation(t), this.canvas, 60, this.metrics);
+        t.attachGameOver(new IGameOver() {
+            public void exec() {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        JOptionPane.showMessageDialog(LoopFrame.this, "Game over");
+                    }
+                });
+            }
+        });
+        
+        this.canvas.addKeyListener(new KeyAdapter() {
+            public void keyPressed(KeyEvent evt) {
+                if (evt.getKeyCode() == KeyEvent.VK_LEFT)
+                    loop.press(Simulation.Key_t.LEFT);
+                if (evt.getKeyCode() == KeyEvent.VK_RIGHT)
+                    loop.press(Simulation.Key_t.RIGHT);
+                if (evt.getKeyCode() == KeyEvent.VK_DOWN)
+                    loop.press(Simulation.Key_t.DOWN);
+                if (evt.getKeyCode() == KeyEvent.VK_SPACE)
+                    loop.press(Simulation.Key_t.HARD_DROP);
+                if (evt.getKeyCode() == KeyEvent.VK_A || evt.getKeyCode() == KeyEvent.VK_UP)
+                    loop.press(Simulation.Key_t.ROTATE_LEFT);
+                if (evt.getKeyCode() == KeyEvent.VK_D)
+                    loop.press(Simulation.Key_t.ROTATE_RIGHT);
+            }
+            
+            public void keyReleased(KeyEvent evt) {
+                if (evt.getKeyCode() == KeyEvent.VK_LEFT)
+                    loop.release(Simulation.Key_t.LEFT);
+                if (evt.getKeyCode() == KeyEvent.VK_RIGHT)
+                    loop.release(Simulation.Key_t.RIGHT);
+                if (evt.getKeyCode() == KeyEvent.VK_DOWN)
+                    loop.release(Simulation.Key_t.DOWN);
+                if (evt.getKeyCode() == KeyEvent.VK_SPACE)
+                    loop.release(Simulation.Key_t.HARD_DROP);
+                if (evt.getKeyCode() == KeyEvent.VK_A || evt.getKeyCode() == KeyEvent.VK_UP)
+                    loop.release(Simulation.Key_t.ROTATE_LEFT);
+                if (evt.getKeyCode() == KeyEvent.VK_D)
+                    loop.release(Simulation.Key_t.ROTATE_RIGHT);
+            }
+        });
+        this.addWindowListener(new WindowAdapter() {
+            public void windowOpened(WindowEvent e) {
+                canvas.requestFocusInWindow();
+                loop.start();
+            }
+            
+            public void windowClosing(WindowEvent e) {
+                try {
+                    loop.stop();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                metrics.close();
+            }
+        });
+        
+        this.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+        this.setResizable(false);
+        this.add(this.canvas);
+        this.pack();
+    }
+    
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+}
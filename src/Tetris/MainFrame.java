@@ -96,33 +96,36 @@ public class MainFrame extends javax.swing.JFrame {
     private void drawingAreaKeyPressed(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_drawingAreaKeyPressed
         // TODO add your handling code here:
         if (evt.getKeyCode() == KeyEvent.VK_LEFT)
-            this.drawingArea.setMovingLeft(true);
+            this.drawingArea.press(Simulation.Key_t.LEFT);
         if (evt.getKeyCode() == KeyEvent.VK_RIGHT)
-            this.drawingArea.setMovingRight(true);
-        if (evt.getKeyCode() == KeyEvent.VK_DOWN) {
-            this.drawingArea.setMovingDown(true);
-            this.drawingArea.setDropping(true);
+            this.drawingArea.press(Simulation.Key_t.RIGHT);
+        if (evt.getKeyCode() == KeyEvent.VK_DOWN)
+            this.drawingArea.press(Simulation.Key_t.DOWN);
+        if (evt.getKeyCode() == KeyEvent.VK_SPACE)
+            this.drawingArea.press(Simulation.Key_t.HARD_DROP);
+        if (evt.getKeyCode() == KeyEvent.VK_A || evt.getKeyCode() == KeyEvent.VK_UP)
+            this.drawingArea.press(Simulation.Key_t.ROTATE_LEFT);
+        if (evt.getKeyCode() == KeyEvent.VK_D)
+            this.drawingArea.press(Simulation.Key_t.ROTATE_RIGHT);
+        if (evt.getKeyCode() == KeyEvent.VK_Z || evt.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
+            this.drawingArea.undo();
         }
     }//GEN-LAST:event_drawingAreaKeyPressed
 
     private void drawingAreaKeyReleased(java.awt.event.KeyEvent evt) {//GEN-FIRST:event_drawingAreaKeyReleased
         // TODO add your handling code here:
         if (evt.getKeyCode() == KeyEvent.VK_LEFT)
-            this.drawingArea.setMovingLeft(false);
+            this.drawingArea.release(Simulation.Key_t.LEFT);
         if (evt.getKeyCode() == KeyEvent.VK_RIGHT)
-            this.drawingArea.setMovingRight(false);
-        if (evt.getKeyCode() == KeyEvent.VK_DOWN) {
-            this.drawingArea.setMovingDown(false);
-            this.drawingArea.setDropping(false);
-        }
-        if (evt.getKeyCode() == KeyEvent.VK_A || evt.getKeyCode() == KeyEvent.VK_UP) {
-            this.drawingArea.rotateLeft();
-            this.drawingArea.repaint();
-        }
-        if (evt.getKeyCode() == KeyEvent.VK_D) {
-            this.drawingArea.rotateRight();
-            this.drawingArea.repaint();
-        }
+            this.drawingArea.release(Simulation.Key_t.RIGHT);
+        if (evt.getKeyCode() == KeyEvent.VK_DOWN)
+            this.drawingArea.release(Simulation.Key_t.DOWN);
+        if (evt.getKeyCode() == KeyEvent.VK_SPACE)
+            this.drawingArea.release(Simulation.Key_t.HARD_DROP);
+        if (evt.getKeyCode() == KeyEvent.VK_A || evt.getKeyCode() == KeyEvent.VK_UP)
+            this.drawingArea.release(Simulation.Key_t.ROTATE_LEFT);
+        if (evt.getKeyCode() == KeyEvent.VK_D)
+            this.drawingArea.release(Simulation.Key_t.ROTATE_RIGHT);
     }//GEN-LAST:event_drawingAreaKeyReleased
 
     /**
@@ -155,7 +158,37 @@ public class MainFrame extends javax.swing.JFrame {
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new MainFrame().setVisible(true);
+                MainFrame f;
+                LoopFrame l;
+                int i;
+                
+                // -loop runs the game on a dedicated thread with active rendering instead of the Swing timers.
+                if (args.length > 0 && "-loop".equals(args[0])) {
+                    l = new LoopFrame();
+                    l.getMetrics().register("loop");
+                    for (i = 1; i + 1 < args.length; i += 2)
+                        if ("-metrics".equals(args[i]))
+                            l.getMetrics().startLogging(Integer.parseInt(args[i + 1]));
+                    l.setVisible(true);
+                    return;
+                }
+                
+                f = new MainFrame();
+                f.drawingArea.getMetrics().register("main");
+                // Optional arguments: -record <file> records the game, -replay <file> plays a recorded game, -metrics <seconds> logs the metrics periodically.
+                try {
+                    for (i = 0; i + 1 < args.length; i += 2) {
+                        if ("-record".equals(args[i]))
+                            f.drawingArea.record(java.nio.file.Paths.get(args[i + 1]));
+                        else if ("-replay".equals(args[i]))
+                            f.drawingArea.play(Replay.read(java.nio.file.Paths.get(args[i + 1])));
+                        else if ("-metrics".equals(args[i]))
+                            f.drawingArea.getMetrics().startLogging(Integer.parseInt(args[i + 1]));
+                    }
+                } catch (java.io.IOException ex) {
+                    java.util.logging.Logger.getLogger(MainFrame.class.getName()).log(java.util.logging.Level.SEVERE, null, ex);
+                }
+                f.setVisible(true);
             }
         });
     }
@@ -0,0 +1,315 @@
+package Tetris;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of a game: latency histograms of the engine ticks, the input handling and the paints, jitter of the game timer, pieces and lines per second and the memory allocated by the game thread.
+ * Measuring costs two System.nanoTime() calls and an atomic increment, so the metrics can stay enabled. They can be read through JMX and optionally dumped to the log periodically.
+ * Usage: long t = metrics.start(); ...; metrics.tick(t);
+ */
+public class Metrics implements MetricsMBean {
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+
+    protected Histogram ticks, inputs, paints, jitter;
+    protected volatile long pieces, lines;
+    protected volatile long since;
+    protected volatile long lastTimer;
+    protected volatile long gameThread;
+    protected volatile boolean enabled;
+    protected IGameEventListener listener;
+    protected ObjectName name;
+    protected ScheduledExecutorService logger;
+
+    /**
+     * Constructor. The metrics are enabled.
+     */
+    public Metrics() {
+        this.ticks = new Histogram();
+        this.inputs = new Histogram();
+        this.paints = new Histogram();
+        this.jitter = new Histogram();
+        this.enabled = true;
+        this.gameThread = -1;
+        this.listener = new IGameEventListener() {
+            public void exec(GameEvent e) {
+                if (e.type == GameEvent.Event_t.LOCK)
+                    pieces++;
+                else if (e.type == GameEvent.Event_t.LINES_CLEARED)
+                    lines += e.lines;
+            }
+        };
+        this.reset();
+    }
+
+    /**
+     * Counts the pieces and the lines of a game. The listener should be detached from the previous game's bus when the game is replaced.
+     * @param t The game.
+     */
+    public void attach(Tetris t) {
+        t.getEventBus().attach(this.listener);
+    }
+
+    /**
+     * Stops counting the pieces and the lines of a game.
+     * @param t The game.
+     */
+    public void detach(Tetris t) {
+        t.getEventBus().detach(this.listener);
+    }
+
+    /**
+     * Starts a measurement.
+     * @return Timestamp to be passed to tick(), input() or paint(), or 0 if the metrics are disabled.
+     */
+    public long start() {
+        return this.enabled? System.nanoTime(): 0;
+    }
+
+    /**
+     * Ends the measurement of an engine tick. The calling thread is the one whose allocations are reported.
+     * @param start Timestamp returned by start().
+     */
+    public void tick(long start) {
+        long id;
+
+        if (start != 0) {
+            this.ticks.record(System.nanoTime() - start);
+            id = Thread.currentThread().getId();
+            if (this.gameThread != id)
+                this.gameThread = id;
+        }
+    }
+
+    /**
+     * Ends the measurement of an input.
+     * @param start Timestamp returned by start().
+     */
+    public void input(long start) {
+        if (start != 0)
+            this.inputs.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Ends the measurement of a paint.
+     * @param start Timestamp returned by start().
+     */
+    public void paint(long start) {
+        if (start != 0)
+            this.paints.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records a firing of the game timer, measuring how far the interval from the previous firing is from the intended delay.
+     * @param start Timestamp returned by start(), taken when the timer fired.
+     * @param delay Intended delay, in milliseconds.
+     */
+    public void timer(long start, int delay) {
+        long last = this.lastTimer;
+
+        if (start == 0)
+            return;
+        if (last != 0)
+            this.jitter.record(Math.abs(start - last - delay * 1000000L));
+        this.lastTimer = start;
+    }
+
+    /**
+     * Forgets the previous firing of the game timer, e.g. when it's restarted.
+     */
+    public void restartTimer() {
+        this.lastTimer = 0;
+    }
+
+    public Histogram getTicks() {
+        return this.ticks;
+    }
+
+    public Histogram getInputs() {
+        return this.inputs;
+    }
+
+    public Histogram getPaints() {
+        return this.paints;
+    }
+
+    public Histogram getTimerJitter() {
+        return this.jitter;
+    }
+
+    public long getTickCount() {
+        return this.ticks.getCount();
+    }
+
+    public long getTickP50() {
+        return this.ticks.getPercentile(50) / 1000;
+    }
+
+    public long getTickP99() {
+        return this.ticks.getPercentile(99) / 1000;
+    }
+
+    public long getTickMax() {
+        return this.ticks.getMax() / 1000;
+    }
+
+    public long getInputCount() {
+        return this.inputs.getCount();
+    }
+
+    public long getInputP50() {
+        return this.inputs.getPercentile(50) / 1000;
+    }
+
+    public long getInputP99() {
+        return this.inputs.getPercentile(99) / 1000;
+    }
+
+    public long getInputMax() {
+        return this.inputs.getMax() / 1000;
+    }
+
+    public long getPaintCount() {
+        return this.paints.getCount();
+    }
+
+    public long getPaintP50() {
+        return this.paints.getPercentile(50) / 1000;
+    }
+
+    public long getPaintP99() {
+        return this.paints.getPercentile(99) / 1000;
+    }
+
+    public long getPaintMax() {
+        return this.paints.getMax() / 1000;
+    }
+
+    public long getTimerJitterP50() {
+        return this.jitter.getPercentile(50) / 1000;
+    }
+
+    public long getTimerJitterP99() {
+        return this.jitter.getPercentile(99) / 1000;
+    }
+
+    public long getTimerJitterMax() {
+        return this.jitter.getMax() / 1000;
+    }
+
+    public long getPieces() {
+        return this.pieces;
+    }
+
+    public long getLines() {
+        return this.lines;
+    }
+
+    public double getPiecesPerSecond() {
+        return this.pieces * 1e9 / Math.max(1, System.nanoTime() - this.since);
+    }
+
+    public double getLinesPerSecond() {
+        return this.lines * 1e9 / Math.max(1, System.nanoTime() - this.since);
+    }
+
+    public long getAllocatedBytes() {
+        ThreadMXBean t = ManagementFactory.getThreadMXBean();
+
+        if (this.gameThread < 0 || !(t instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        return ((com.sun.management.ThreadMXBean)t).getThreadAllocatedBytes(this.gameThread);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public void setEnabled(boolean b) {
+        this.enabled = b;
+        this.lastTimer = 0;
+    }
+
+    public void reset() {
+        this.ticks.reset();
+        this.inputs.reset();
+        this.paints.reset();
+        this.jitter.reset();
+        this.pieces = 0;
+        this.lines = 0;
+        this.lastTimer = 0;
+        this.since = System.nanoTime();
+    }
+
+    public String getSummary() {
+        return String.format("tick p50/p99/max %d/%d/%d us (%d), input %d/%d/%d us (%d), paint %d/%d/%d us (%d), timer jitter %d/%d/%d us, %.2f pieces/s, %.2f lines/s, %d bytes allocated",
+                this.getTickP50(), this.getTickP99(), this.getTickMax(), this.getTickCount(),
+                this.getInputP50(), this.getInputP99(), this.getInputMax(), this.getInputCount(),
+                this.getPaintP50(), this.getPaintP99(), this.getPaintMax(), this.getPaintCount(),
+                this.getTimerJitterP50(), this.getTimerJitterP99(), this.getTimerJitterMax(),
+                this.getPiecesPerSecond(), this.getLinesPerSecond(), this.getAllocatedBytes());
+    }
+
+    /**
+     * Registers the metrics on the platform MBean server, as Tetris:type=Metrics,name=<name>.
+     * @param name Name of this instance.
+     */
+    public void register(String name) {
+        try {
+            this.name = new ObjectName("Tetris:type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.name);
+        } catch (JMException ex) {
+            LOGGER.log(Level.WARNING, null, ex);
+            this.name = null;
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server and stops the periodic log dump.
+     */
+    public void close() {
+        if (this.name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.name);
+            } catch (JMException ex) {
+                LOGGER.log(Level.WARNING, null, ex);
+            }
+            this.name = null;
+        }
+        if (this.logger != null) {
+            this.logger.shutdown();
+            this.logger = null;
+        }
+    }
+
+    /**
+     * Logs the summary periodically, from a daemon thread.
+     * @param seconds Period of the log dump.
+     */
+    public void startLogging(int seconds) {
+        if (this.logger != null)
+            this.logger.shutdown();
+        this.logger = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Metrics");
+
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.logger.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                LOGGER.info(getSummary());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+}
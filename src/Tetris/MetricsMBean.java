@@ -0,0 +1,48 @@
+package Tetris;
+
+/**
+ * Management interface of Metrics. Latencies are in microseconds, rates are averaged since the last reset.
+ */
+public interface MetricsMBean {
+    public long getTickCount();
+    public long getTickP50();
+    public long getTickP99();
+    public long getTickMax();
+
+    public long getInputCount();
+    public long getInputP50();
+    public long getInputP99();
+    public long getInputMax();
+
+    public long getPaintCount();
+    public long getPaintP50();
+    public long getPaintP99();
+    public long getPaintMax();
+
+    public long getTimerJitterP50();
+    public long getTimerJitterP99();
+    public long getTimerJitterMax();
+
+    public long getPieces();
+    public long getLines();
+    public double getPiecesPerSecond();
+    public double getLinesPerSecond();
+
+    /**
+     * @return Bytes allocated by the thread which runs the game, or -1 if the JVM doesn't support it.
+     */
+    public long getAllocatedBytes();
+
+    public boolean isEnabled();
+    public void setEnabled(boolean b);
+
+    /**
+     * Clears every histogram and counter.
+     */
+    public void reset();
+
+    /**
+     * @return A one line summary of every metric.
+     */
+    public String getSummary();
+}
@@ -0,0 +1,224 @@
+package Tetris;
+
+/**
+ * Enumerates every final placement of a tetromino which can be reached from its current position: any sequence of rotations and horizontal moves on the current row, followed by a straight drop.
+ * It works on a snapshot of the playing field (as returned by Tetris.getField()) and on the rotation data of Tetromino: positions on the current row are found by flood filling bit masks of the free columns,
+ * and landing rows come from the column heights. Rotations which yield the same shape (O, I, S and Z) are enumerated once. Nothing is allocated after construction.
+ * Placements are encoded as ints: see getRotation(), getX() and getY(). Only fields up to Board.MAX_WIDTH columns are supported.
+ */
+public class PlacementGenerator {
+    protected int w, h;
+    protected int[] heights;
+    protected long[] free, reach;
+    protected long[] field;
+
+    /**
+     * Constructor.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     */
+    public PlacementGenerator(int w, int h) {
+        if (w > Board.MAX_WIDTH)
+            throw new IllegalArgumentException("Playing field too wide: " + w);
+
+        this.w = w;
+        this.h = h;
+        this.heights = new int[w];
+        this.free = new long[4];
+        this.reach = new long[4];
+        this.field = new long[h];
+    }
+
+    /**
+     * Decodes the rotation of a placement.
+     * @param p The placement.
+     * @return The rotation, as returned by Tetromino.getRotation().
+     */
+    public static int getRotation(int p) {
+        return p & 3;
+    }
+
+    /**
+     * Decodes the column of a placement.
+     * @param p The placement.
+     * @return Column of the tetromino's pivot.
+     */
+    public static int getX(int p) {
+        return (p >>> 2) & 0x3f;
+    }
+
+    /**
+     * Decodes the row of a placement.
+     * @param p The placement.
+     * @return Row of the tetromino's pivot once it has landed.
+     */
+    public static int getY(int p) {
+        return p >>> 8;
+    }
+
+    /**
+     * Enumerates the placements of a game's current tetromino. The game is not modified.
+     * @param t The game. Its playing field must have the size given to the constructor.
+     * @param out Destination of the placements. It must hold at least 4 * width elements.
+     * @return Number of placements.
+     */
+    public int generate(Tetris t, int[] out) {
+        t.getField(this.field);
+
+        return this.generate(this.field, t.getTetromino(), t.getX(), t.getY(), out);
+    }
+
+    /**
+     * Enumerates the placements of a tetromino.
+     * @param rows The playing field, one word per row, bottom row first (see Tetris.getField()).
+     * @param start The tetromino, in its starting rotation.
+     * @param x Starting column of the tetromino's pivot.
+     * @param y Starting row of the tetromino's pivot.
+     * @param out Destination of the placements. It must hold at least 4 * width elements.
+     * @return Number of placements, 0 if the tetromino collides in its starting position.
+     */
+    public int generate(long[] rows, Tetromino start, int x, int y, int[] out) {
+        int distinct = start.getDistinctRotations();
+        int n = 0;
+        int r, c, top;
+        long bit, m;
+        boolean changed;
+
+        for (r = 0; r < distinct; r++) {
+            this.free[r] = this.getFree(rows, Tetromino.get(start.getType(), r), y);
+            this.reach[r] = 0;
+        }
+        bit = 1L << x;
+        if (x < 0 || x >= this.w || (this.free[start.getRotation() % distinct] & bit) == 0)
+            return 0;
+        this.reach[start.getRotation() % distinct] = bit;
+
+        // Flood fill: horizontal moves within a rotation, then rotations in place, until nothing changes.
+        do {
+            changed = false;
+            for (r = 0; r < distinct; r++) {
+                m = this.reach[r];
+                if (m == 0)
+                    continue;
+                m = fill(m, this.free[r]);
+                this.reach[r] = m;
+                if (distinct > 1) {
+                    changed |= this.rotate((r + 1) % distinct, m);
+                    changed |= this.rotate((r + distinct - 1) % distinct, m);
+                }
+            }
+        } while (changed);
+
+        // Column heights, from the top row downwards.
+        for (c = 0; c < this.w; c++)
+            this.heights[c] = 0;
+        m = (this.w == 64)? -1L: (1L << this.w) - 1;
+        for (top = this.h - 1; top >= 0 && m != 0; top--) {
+            bit = rows[top] & m;
+            m &= ~bit;
+            while (bit != 0) {
+                this.heights[Long.numberOfTrailingZeros(bit)] = top + 1;
+                bit &= bit - 1;
+            }
+        }
+
+        for (r = 0; r < distinct; r++)
+            for (m = this.reach[r]; m != 0; m &= m - 1) {
+                c = Long.numberOfTrailingZeros(m);
+                out[n++] = r | c << 2 | this.land(rows, Tetromino.get(start.getType(), r), c, y) << 8;
+            }
+
+        return n;
+    }
+
+    /**
+     * Extends a set of reachable columns with horizontal moves.
+     * @param m The reachable columns.
+     * @param free The free columns.
+     * @return Every free column connected to a reachable one.
+     */
+    private static long fill(long m, long free) {
+        long prev;
+
+        do {
+            prev = m;
+            m |= ((m << 1) | (m >>> 1)) & free;
+        } while (m != prev);
+
+        return m;
+    }
+
+    /**
+     * Adds the columns reachable by rotating in place.
+     * @param r Rotation reached.
+     * @param m Columns reachable in the previous rotation.
+     * @return True if new columns have been reached.
+     */
+    private boolean rotate(int r, long m) {
+        long add = m & this.free[r] & ~this.reach[r];
+
+        this.reach[r] |= add;
+
+        return add != 0;
+    }
+
+    /**
+     * Computes the columns where a tetromino doesn't collide on a given row.
+     * @param rows The playing field.
+     * @param t The tetromino.
+     * @param y Row of the tetromino's pivot.
+     * @return Bit x is set if the pivot can be in column x.
+     */
+    private long getFree(long[] rows, Tetromino t, int y) {
+        long[] masks = t.getRows();
+        long ret = 0;
+        int x, i;
+
+        if (y - t.getMaxY() < 0 || y - t.getMinY() >= this.h)
+            return 0;
+
+        for (x = -t.getMinX(); x + t.getMaxX() < this.w; x++) {
+            for (i = 0; i < masks.length; i++)
+                if ((rows[y - t.getMinY() - i] & (masks[i] << (x + t.getMinX()))) != 0)
+                    break;
+            if (i == masks.length)
+                ret |= 1L << x;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Computes the landing row of a tetromino dropped straight down from a free position.
+     * @param rows The playing field.
+     * @param t The tetromino.
+     * @param x Column of the tetromino's pivot.
+     * @param y Starting row of the tetromino's pivot.
+     * @return Landing row of the tetromino's pivot.
+     */
+    private int land(long[] rows, Tetromino t, int x, int y) {
+        int[] bottoms = t.getBottoms();
+        long[] masks = t.getRows();
+        int left = x + t.getMinX();
+        int ret = Integer.MIN_VALUE;
+        int i;
+
+        for (i = 0; i < bottoms.length; i++)
+            ret = Math.max(ret, this.heights[left + i] + bottoms[i]);
+
+        // Blocks above the tetromino's lowest cell in a column: drop row by row, as Tetris.getGhostY() does.
+        if (ret > y) {
+            ret = y;
+            while (ret - 1 - t.getMaxY() >= 0) {
+                for (i = 0; i < masks.length; i++)
+                    if ((rows[ret - 1 - t.getMinY() - i] & (masks[i] << left)) != 0)
+                        break;
+                if (i < masks.length)
+                    break;
+                ret--;
+            }
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,105 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary protocol of GameServer. Every message is a frame made of its length (2 bytes, excluding the length itself), its type (1 byte) and its payload, in network byte order.
+ * <ul>
+ * <li>HELLO (client): width, height, level (1 byte each), seed (8 bytes). Starts a new game, replacing the previous one.</li>
+ * <li>INPUT (client): key (Simulation.Key_t ordinal, 1 byte), pressed (1 byte), sequence number (4 bytes).</li>
+ * <li>STATE (server): last applied input sequence number (4), score (8), lines (4), level (1), current tetromino type (1), rotation (1), x (1), y (2), next tetromino type (1),
+ * number of field rows which follow (1 byte, 0 when the field didn't change since the previous STATE) and the rows themselves, bottom first, 8 bytes each (bit i is column i).</li>
+ * <li>GAME_OVER (server): final score (8).</li>
+ * </ul>
+ * The playing field is limited to 64 columns and 255 rows.
+ */
+public class Protocol {
+    public static final byte HELLO = 1;
+    public static final byte INPUT = 2;
+    public static final byte STATE = 3;
+    public static final byte GAME_OVER = 4;
+
+    public static final int MAX_WIDTH = 64;
+    public static final int MAX_HEIGHT = 255;
+
+    /**
+     * Declared lengths of the HELLO and INPUT frames: type and payload, without the length itself.
+     */
+    public static final int HELLO_SIZE = 1 + 1 + 1 + 1 + 8;
+    public static final int INPUT_SIZE = 1 + 1 + 1 + 4;
+
+    /**
+     * Size of a STATE frame without the field rows, including the length.
+     */
+    public static final int STATE_SIZE = 2 + 1 + 4 + 8 + 4 + 1 + 1 + 1 + 1 + 2 + 1 + 1;
+
+    /**
+     * Writes a HELLO frame.
+     * @param b Destination buffer.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     * @param seed Seed of the tetromino sequence.
+     */
+    public static void putHello(ByteBuffer b, int w, int h, int level, long seed) {
+        b.putShort((short)HELLO_SIZE);
+        b.put(HELLO);
+        b.put((byte)w);
+        b.put((byte)h);
+        b.put((byte)level);
+        b.putLong(seed);
+    }
+
+    /**
+     * Writes an INPUT frame.
+     * @param b Destination buffer.
+     * @param k The key.
+     * @param pressed True if the key is pressed, false if it's released.
+     * @param seq Sequence number, echoed by the following STATE frames.
+     */
+    public static void putInput(ByteBuffer b, Simulation.Key_t k, boolean pressed, int seq) {
+        b.putShort((short)INPUT_SIZE);
+        b.put(INPUT);
+        b.put((byte)k.ordinal());
+        b.put((byte)(pressed? 1: 0));
+        b.putInt(seq);
+    }
+
+    /**
+     * Writes a STATE frame.
+     * @param b Destination buffer.
+     * @param t The game.
+     * @param ack Sequence number of the last applied input.
+     * @param rows The playing field (see Tetris.getField()), or null if it didn't change.
+     */
+    public static void putState(ByteBuffer b, Tetris t, int ack, long[] rows) {
+        int n = (rows == null)? 0: t.getHeight();
+        int i;
+
+        b.putShort((short)(STATE_SIZE - 2 + 8 * n));
+        b.put(STATE);
+        b.putInt(ack);
+        b.putLong(t.getScore());
+        b.putInt(t.getLines());
+        b.put((byte)t.getLevel());
+        b.put((byte)t.getCurrent().ordinal());
+        b.put((byte)t.getTetromino().getRotation());
+        b.put((byte)t.getX());
+        b.putShort((short)t.getY());
+        b.put((byte)t.getNext().ordinal());
+        b.put((byte)n);
+        for (i = 0; i < n; i++)
+            b.putLong(rows[i]);
+    }
+
+    /**
+     * Writes a GAME_OVER frame.
+     * @param b Destination buffer.
+     * @param score Final score.
+     */
+    public static void putGameOver(ByteBuffer b, long score) {
+        b.putShort((short)9);
+        b.put(GAME_OVER);
+        b.putLong(score);
+    }
+}
@@ -0,0 +1,43 @@
+package Tetris;
+
+import java.util.Random;
+
+/**
+ * IPolicy implementation. It presses and releases random keys, which is enough to exercise the engine in benchmarks and stress tests.
+ */
+public class RandomPolicy implements IPolicy {
+    private Random r;
+
+    /**
+     * Constructor.
+     * @param seed Seed of the input sequence.
+     */
+    public RandomPolicy(long seed) {
+        this.r = new Random(seed);
+    }
+
+    /**
+     * Presses or releases a random key.
+     * @param s The Simulation which is about to advance.
+     */
+    public void exec(Simulation s) {
+        Simulation.Key_t k = Simulation.Key_t.values()[this.r.nextInt(5)];
+
+        if (this.r.nextBoolean())
+            s.press(k);
+        else
+            s.release(k);
+    }
+
+    /**
+     * Gets a factory creating a RandomPolicy seeded with the game seed.
+     * @return The factory.
+     */
+    public static IPolicyFactory factory() {
+        return new IPolicyFactory() {
+            public IPolicy create(long seed) {
+                return new RandomPolicy(seed);
+            }
+        };
+    }
+}
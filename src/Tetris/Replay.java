@@ -0,0 +1,228 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Recorded game. It stores the tetromino sequence (generator and seed) and every input applied to the Tetris instance, so the game can be played again exactly.
+ * Inputs are encoded as varints of (updates since the previous input << 3 | input), which usually takes a single byte: a whole tetromino costs a few bytes.
+ * The final score, lines and level are stored as well, in order to verify the playback.
+ */
+public class Replay {
+    public enum Op_t {LEFT, RIGHT, DOWN, ROTATE_LEFT, ROTATE_RIGHT, HARD_DROP, DROP_ON, DROP_OFF};
+
+    public static final byte GENERATOR_UNIFORM = 0;
+    public static final byte GENERATOR_BAG = 1;
+    public static final byte GENERATOR_HISTORY = 2;
+
+    private static final int MAGIC = 0x5452504c; // "TRPL"
+    private static final byte VERSION = 1;
+
+    protected int w, h, level;
+    protected byte generator;
+    protected long seed;
+    protected byte[] ops;
+    protected int length;
+    protected long updates;
+    protected long score;
+    protected int lines;
+    protected int finalLevel;
+
+    /**
+     * Constructor.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     * @param generator Kind of tetromino generator (one of the GENERATOR_ constants).
+     * @param seed Seed of the tetromino generator.
+     * @param ops Encoded inputs.
+     * @param length Number of valid bytes in ops.
+     * @param updates Number of updates after the last input.
+     * @param score Final score.
+     * @param lines Final number of cleared lines.
+     * @param finalLevel Final level.
+     */
+    public Replay(int w, int h, int level, byte generator, long seed, byte[] ops, int length, long updates, long score, int lines, int finalLevel) {
+        this.w = w;
+        this.h = h;
+        this.level = level;
+        this.generator = generator;
+        this.seed = seed;
+        this.ops = ops;
+        this.length = length;
+        this.updates = updates;
+        this.score = score;
+        this.lines = lines;
+        this.finalLevel = finalLevel;
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    public long getSeed() {
+        return this.seed;
+    }
+
+    public long getScore() {
+        return this.score;
+    }
+
+    public int getLines() {
+        return this.lines;
+    }
+
+    public int getFinalLevel() {
+        return this.finalLevel;
+    }
+
+    /**
+     * @return Size of the encoded inputs, in bytes.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Creates a tetromino generator.
+     * @param kind Kind of generator (one of the GENERATOR_ constants).
+     * @param seed Seed of the generator.
+     * @return The generator.
+     */
+    public static IPieceGenerator createGenerator(byte kind, long seed) {
+        switch (kind) {
+            case GENERATOR_BAG:
+                return new BagGenerator(seed);
+            case GENERATOR_HISTORY:
+                return new HistoryGenerator(seed);
+            default:
+                return new UniformGenerator(seed);
+        }
+    }
+
+    /**
+     * Creates a new game in the same initial state as the recorded one.
+     * @return The game.
+     */
+    public Tetris createTetris() {
+        return new Tetris(this.w, this.h, this.level, createGenerator(this.generator, this.seed));
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * @param b The buffer, positioned on the varint.
+     * @return The value.
+     */
+    static long getVarLong(ByteBuffer b) {
+        long ret = 0;
+        int shift = 0;
+        byte c;
+
+        do {
+            c = b.get();
+            ret |= (long)(c & 0x7f) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+
+        return ret;
+    }
+
+    /**
+     * Writes an unsigned varint.
+     * @param b The buffer.
+     * @param v The value.
+     */
+    static void putVarLong(ByteBuffer b, long v) {
+        while ((v & ~0x7fL) != 0) {
+            b.put((byte)((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte)v);
+    }
+
+    /**
+     * Writes the replay to a file through a single buffered channel write.
+     * @param file Destination file. It's overwritten if it exists.
+     * @throws IOException If the file can't be written.
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(this.length + 64).order(ByteOrder.LITTLE_ENDIAN);
+
+        b.putInt(MAGIC);
+        b.put(VERSION);
+        putVarLong(b, this.w);
+        putVarLong(b, this.h);
+        putVarLong(b, this.level);
+        b.put(this.generator);
+        b.putLong(this.seed);
+        putVarLong(b, this.length);
+        b.put(this.ops, 0, this.length);
+        putVarLong(b, this.updates);
+        putVarLong(b, this.score);
+        putVarLong(b, this.lines);
+        putVarLong(b, this.finalLevel);
+        b.flip();
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining())
+                ch.write(b);
+        }
+    }
+
+    /**
+     * Reads a replay from a file.
+     * @param file Source file.
+     * @return The replay.
+     * @throws IOException If the file can't be read or isn't a replay.
+     */
+    public static Replay read(Path file) throws IOException {
+        ByteBuffer b;
+        long w, h;
+        int level, length;
+        byte generator;
+        long seed;
+        byte[] ops;
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            b = ByteBuffer.allocate((int)ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining() && ch.read(b) >= 0)
+                ;
+        }
+        b.flip();
+
+        if (b.remaining() < 5 || b.getInt() != MAGIC || b.get() != VERSION)
+            throw new IOException("Not a replay file: " + file);
+        // Truncated or corrupt files must fail as any other unreadable file.
+        try {
+            w = getVarLong(b);
+            h = getVarLong(b);
+            if (w <= 0 || h <= 0 || w > Short.MAX_VALUE || h > Short.MAX_VALUE)
+                throw new IOException("Corrupt replay: " + file);
+            level = (int)getVarLong(b);
+            generator = b.get();
+            seed = b.getLong();
+            length = (int)getVarLong(b);
+            if (length < 0 || length > b.remaining())
+                throw new IOException("Corrupt replay: " + file);
+            ops = new byte[length];
+            b.get(ops);
+
+            return new Replay((int)w, (int)h, level, generator, seed, ops, length, getVarLong(b), getVarLong(b), (int)getVarLong(b), (int)getVarLong(b));
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Corrupt replay: " + file, ex);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays a Replay on a Tetris instance, either one update at a time (e.g. from a Swing timer) or all at once at full speed.
+ */
+public class ReplayPlayer {
+    private static final Replay.Op_t[] OPS = Replay.Op_t.values();
+
+    protected Replay replay;
+    protected Tetris tetris;
+    protected ByteBuffer ops;
+    protected long pending;
+    protected Replay.Op_t next;
+
+    /**
+     * Constructor. Creates a new game from the replay.
+     * @param r The replay.
+     */
+    public ReplayPlayer(Replay r) {
+        this(r, r.createTetris());
+    }
+
+    /**
+     * Constructor. Applies the inputs recorded before the first update.
+     * @param r The replay.
+     * @param t The game, which must be in the replay's initial state.
+     */
+    public ReplayPlayer(Replay r, Tetris t) {
+        this.replay = r;
+        this.tetris = t;
+        this.ops = ByteBuffer.wrap(r.ops, 0, r.length);
+        this.fetch();
+        this.applyPending();
+    }
+
+    public Tetris getTetris() {
+        return this.tetris;
+    }
+
+    /**
+     * Decodes the next input, or the final number of updates once every input has been read.
+     */
+    private void fetch() {
+        long v;
+
+        if (this.ops.hasRemaining()) {
+            v = Replay.getVarLong(this.ops);
+            this.pending = v >>> 3;
+            this.next = OPS[(int)(v & 7)];
+        }
+        else {
+            this.pending = this.replay.updates;
+            this.next = null;
+        }
+    }
+
+    /**
+     * Applies every input which isn't preceded by an update.
+     */
+    private void applyPending() {
+        while (this.pending == 0 && this.next != null) {
+            switch (this.next) {
+                case LEFT:
+                    this.tetris.moveLeft();
+                    break;
+                case RIGHT:
+                    this.tetris.moveRight();
+                    break;
+                case DOWN:
+                    this.tetris.moveDown();
+                    break;
+                case ROTATE_LEFT:
+                    this.tetris.rotateLeft();
+                    break;
+                case ROTATE_RIGHT:
+                    this.tetris.rotateRight();
+                    break;
+                case HARD_DROP:
+                    this.tetris.hardDrop();
+                    break;
+                case DROP_ON:
+                    this.tetris.setDropping(true);
+                    break;
+                case DROP_OFF:
+                    this.tetris.setDropping(false);
+                    break;
+            }
+            this.fetch();
+        }
+    }
+
+    /**
+     * Plays a single update, followed by the inputs recorded before the next one.
+     * @return False if the replay is over.
+     */
+    public boolean step() {
+        if (this.pending == 0)
+            return false;
+
+        this.tetris.update();
+        this.pending--;
+        this.applyPending();
+
+        return true;
+    }
+
+    /**
+     * Plays the rest of the replay at full speed.
+     */
+    public void playAll() {
+        while (this.step())
+            ;
+    }
+
+    /**
+     * Plays the rest of the replay and compares the final state with the recorded one.
+     * @return True if the playback matches the recording.
+     */
+    public boolean verify() {
+        this.playAll();
+
+        return this.tetris.getScore() == this.replay.getScore() && this.tetris.getLines() == this.replay.getLines() &&
+                this.tetris.getLevel() == this.replay.getFinalLevel();
+    }
+
+    /**
+     * Verifies many replay files in parallel.
+     * @param files The replay files.
+     * @param threads Number of worker threads.
+     * @return The files which couldn't be read or don't match their recording.
+     * @throws InterruptedException If the verification is interrupted.
+     */
+    public static List<Path> verifyAll(List<Path> files, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Boolean>> results = new ArrayList<>();
+        List<Path> ret = new ArrayList<>();
+        int i;
+
+        try {
+            for (final Path f : files)
+                results.add(pool.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        return new ReplayPlayer(Replay.read(f)).verify();
+                    }
+                }));
+
+            for (i = 0; i < files.size(); i++)
+                try {
+                    if (!results.get(i).get())
+                        ret.add(files.get(i));
+                } catch (ExecutionException ex) {
+                    ret.add(files.get(i));
+                }
+        } finally {
+            pool.shutdown();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Verifies replay files headlessly and prints the ones which don't match their recording.
+     * @param args The replay files.
+     * @throws InterruptedException If the verification is interrupted.
+     */
+    public static void main(String args[]) throws InterruptedException {
+        List<Path> files = new ArrayList<>();
+        List<Path> failed;
+        long start = System.nanoTime();
+
+        for (String a : args)
+            files.add(Paths.get(a));
+        failed = verifyAll(files, Runtime.getRuntime().availableProcessors());
+
+        for (Path f : failed)
+            System.out.println("Mismatch: " + f);
+        System.out.println(String.format("%d replays verified, %d mismatches, %.1f ms", files.size(), failed.size(), (System.nanoTime() - start) / 1e6));
+    }
+}
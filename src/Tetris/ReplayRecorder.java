@@ -0,0 +1,66 @@
+package Tetris;
+
+import java.util.Arrays;
+
+/**
+ * Records the inputs applied to a Tetris instance. Attach it with Tetris.setRecorder() before the first update.
+ */
+public class ReplayRecorder {
+    protected int w, h, level;
+    protected byte generator;
+    protected long seed;
+    protected byte[] ops;
+    protected int length;
+    protected long updates;
+
+    /**
+     * Constructor.
+     * @param t The game to be recorded. It must not have been updated yet.
+     * @param generator Kind of tetromino generator used by the game (one of the Replay.GENERATOR_ constants).
+     * @param seed Seed of the tetromino generator.
+     */
+    public ReplayRecorder(Tetris t, byte generator, long seed) {
+        this.w = t.getWidth();
+        this.h = t.getHeight();
+        this.level = t.getLevel();
+        this.generator = generator;
+        this.seed = seed;
+        this.ops = new byte[256];
+        this.length = 0;
+        this.updates = 0;
+    }
+
+    /**
+     * Records a game update.
+     */
+    public void update() {
+        this.updates++;
+    }
+
+    /**
+     * Records an input, together with the number of updates since the previous one.
+     * @param op The input.
+     */
+    public void record(Replay.Op_t op) {
+        long v = (this.updates << 3) | op.ordinal();
+
+        if (this.length + 10 > this.ops.length)
+            this.ops = Arrays.copyOf(this.ops, 2 * this.ops.length);
+        while ((v & ~0x7fL) != 0) {
+            this.ops[this.length++] = (byte)((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        this.ops[this.length++] = (byte)v;
+        this.updates = 0;
+    }
+
+    /**
+     * Ends the recording.
+     * @param t The recorded game, whose final state is stored for verification.
+     * @return The replay.
+     */
+    public Replay finish(Tetris t) {
+        return new Replay(this.w, this.h, this.level, this.generator, this.seed, Arrays.copyOf(this.ops, this.length), this.length,
+                this.updates, t.getScore(), t.getLines(), t.getLevel());
+    }
+}
@@ -0,0 +1,179 @@
+package Tetris;
+
+/**
+ * Headless game engine. It runs the game on a logical clock (in milliseconds), so a game advances as fast as the CPU allows and doesn't need a display.
+ * The game timer moves the tetromino down every LevelUp.getDelay(level) milliseconds. Key events are recorded in an InputQueue, stamped with the logical time, and applied by an AutoShift
+ * on a step every STEP milliseconds, which also repeats the held keys with the default DAS and ARR: moves, rotations and drops fire on press, as they do in TetrisPanel.
+ * Steps with no pending event and no held key to repeat are skipped, so an idle game costs one event per game timer tick.
+ */
+public class Simulation {
+    public enum Key_t {LEFT, RIGHT, DOWN, ROTATE_LEFT, ROTATE_RIGHT, HARD_DROP};
+
+    /**
+     * Logical duration of an input step, in milliseconds.
+     */
+    public static final int STEP = 5;
+
+    protected Tetris tetris;
+    protected InputQueue inputs;
+    protected AutoShift shift;
+    protected long time;
+    protected long ticks;
+    protected long nextUpdate, nextStep;
+    protected int delay;
+    protected boolean gameOver;
+
+    /**
+     * Constructor. Attaches the game over and level up Commands to the Tetris instance.
+     * @param tetris The game to be driven.
+     */
+    public Simulation(Tetris tetris) {
+        this.tetris = tetris;
+        this.time = 0;
+        this.ticks = 0;
+        this.delay = LevelUp.getDelay(tetris.getLevel());
+        this.nextUpdate = this.delay;
+        this.nextStep = STEP;
+        this.gameOver = false;
+        this.inputs = new InputQueue();
+        this.shift = new AutoShift(tetris, AutoShift.DAS / STEP, AutoShift.ARR / STEP);
+
+        this.tetris.attachGameOver(new IGameOver() {
+            public void exec() {
+                gameOver = true;
+            }
+        });
+        this.tetris.attachLevelUp(new ILevelUp() {
+            public void exec(int level) {
+                delay = LevelUp.getDelay(level);
+            }
+        });
+    }
+
+    /**
+     * Constructor. Creates a new game.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     */
+    public Simulation(int w, int h, int level) {
+        this(new Tetris(w, h, level));
+    }
+
+    public Tetris getTetris() {
+        return this.tetris;
+    }
+
+    /**
+     * @return Logical time elapsed since the beginning of the game, in milliseconds.
+     */
+    public long getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return Number of timer events processed so far.
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    public boolean isGameOver() {
+        return this.gameOver;
+    }
+
+    /**
+     * @return The key handler, counted in steps.
+     */
+    public AutoShift getAutoShift() {
+        return this.shift;
+    }
+
+    /**
+     * Presses a key. The event is applied by the next step. Must only be called by the thread which advances the game.
+     * @param k The key.
+     */
+    public void press(Key_t k) {
+        this.inputs.offer(k, true, this.time);
+    }
+
+    /**
+     * Releases a key. The event is applied by the next step. Must only be called by the thread which advances the game.
+     * @param k The key.
+     */
+    public void release(Key_t k) {
+        this.inputs.offer(k, false, this.time);
+    }
+
+    /**
+     * Skips the steps which would have nothing to do, up to a given logical time.
+     * @param until The last step skipped is at or before this time.
+     */
+    private void skip(long until) {
+        if (this.nextStep < until && this.inputs.size() == 0 && this.shift.isIdle())
+            this.nextStep += (until - this.nextStep) / STEP * STEP;
+    }
+
+    /**
+     * Advances the game to the next timer event, skipping the steps which have nothing to do. Once the game is over nothing happens.
+     */
+    public void tick() {
+        if (this.gameOver)
+            return;
+
+        this.skip(this.nextUpdate);
+        this.next();
+    }
+
+    /**
+     * Processes the next timer event, step or game timer tick. The step comes first if both are due at the same time.
+     */
+    private void next() {
+        this.ticks++;
+        if (this.nextStep <= this.nextUpdate) {
+            this.time = this.nextStep;
+            this.inputs.drain(this.time, this.shift, null);
+            this.shift.tick();
+            this.nextStep = this.time + STEP;
+        }
+        else {
+            this.time = this.nextUpdate;
+            this.tetris.update();
+            this.nextUpdate = this.time + this.delay;
+        }
+    }
+
+    /**
+     * Processes every timer event up to a given logical time.
+     * @param ms Milliseconds to advance.
+     */
+    public void advance(long ms) {
+        long end = this.time + ms;
+
+        while (!this.gameOver) {
+            this.skip(Math.min(this.nextUpdate, end));
+            if (Math.min(this.nextUpdate, this.nextStep) > end)
+                break;
+            this.next();
+        }
+        if (!this.gameOver)
+            this.time = end;
+    }
+
+    /**
+     * Plays the game until it's over, asking the policy for inputs before every tick.
+     * @param policy The input policy.
+     * @param maxTicks Maximum number of ticks to process.
+     * @return Number of ticks processed.
+     */
+    public long run(IPolicy policy, long maxTicks) {
+        long start = this.ticks;
+
+        while (!this.gameOver && this.ticks - start < maxTicks) {
+            policy.exec(this);
+            this.tick();
+        }
+
+        return this.ticks - start;
+    }
+}
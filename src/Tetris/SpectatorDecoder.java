@@ -0,0 +1,178 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedList;
+
+/**
+ * Rebuilds a game's image from the frames of a SpectatorEncoder. No display is needed. Frames received before the first keyframe, or after a missing frame, are skipped until the next keyframe.
+ */
+public class SpectatorDecoder {
+    protected int w, h, words;
+    protected long[] rows;
+    protected long sequence;
+    protected boolean synced;
+    protected Tetromino current;
+    protected Tetromino.Type_t next;
+    protected int x, y;
+    protected long score;
+    protected int lines, level;
+    protected int[] cleared;
+
+    /**
+     * Constructor. Nothing can be decoded until a keyframe is received.
+     */
+    public SpectatorDecoder() {
+        this.synced = false;
+        this.cleared = new int[4];
+    }
+
+    public boolean isSynced() {
+        return this.synced;
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public Tetromino getTetromino() {
+        return this.current;
+    }
+
+    public Tetromino.Type_t getNext() {
+        return this.next;
+    }
+
+    public int getX() {
+        return this.x;
+    }
+
+    public int getY() {
+        return this.y;
+    }
+
+    public long getScore() {
+        return this.score;
+    }
+
+    public int getLines() {
+        return this.lines;
+    }
+
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Decodes a frame.
+     * @param b The frame. Its position is moved to its end.
+     * @return True if the frame has been applied, false if it has been skipped while waiting for a keyframe.
+     */
+    public boolean decode(ByteBuffer b) {
+        byte kind = b.get();
+        long seq = Replay.getVarLong(b);
+        Tetromino c;
+        int i, j, k, n, count, prev;
+
+        if (kind != SpectatorEncoder.KEYFRAME && (!this.synced || seq != this.sequence + 1)) {
+            this.synced = false;
+            b.position(b.limit());
+            return false;
+        }
+
+        c = Tetromino.get(Tetromino.typeOf(b.get()), b.get());
+        this.x = (int)Replay.getVarLong(b);
+        this.y = (int)Replay.getVarLong(b);
+        this.current = c;
+        this.next = Tetromino.typeOf(b.get());
+        this.score = Replay.getVarLong(b);
+        this.lines = (int)Replay.getVarLong(b);
+        this.level = (int)Replay.getVarLong(b);
+
+        if (kind == SpectatorEncoder.KEYFRAME) {
+            this.w = (int)Replay.getVarLong(b);
+            this.h = (int)Replay.getVarLong(b);
+            this.words = (this.w + 63) / 64;
+            if (this.rows == null || this.rows.length != this.words * this.h)
+                this.rows = new long[this.words * this.h];
+            Arrays.fill(this.rows, 0);
+            n = (int)Replay.getVarLong(b);
+            for (i = 0; i < n * this.words; i++)
+                this.rows[i] = Replay.getVarLong(b);
+        }
+        else {
+            count = (int)Replay.getVarLong(b);
+            for (i = 0; i < count; i++) {
+                n = (int)Replay.getVarLong(b);
+                for (j = 0; j < n; j++)
+                    this.cleared[j] = (int)Replay.getVarLong(b);
+                this.removeLines(this.cleared, n);
+            }
+            n = (int)Replay.getVarLong(b);
+            prev = -1;
+            for (i = 0; i < n; i++) {
+                prev += 1 + (int)Replay.getVarLong(b);
+                for (k = 0; k < this.words; k++)
+                    this.rows[prev * this.words + k] = Replay.getVarLong(b);
+            }
+        }
+
+        this.sequence = seq;
+        this.synced = true;
+
+        return true;
+    }
+
+    /**
+     * Removes some lines, shifting the lines above them down.
+     * @param cleared Indices of the lines, in ascending order.
+     * @param n Number of lines.
+     */
+    private void removeLines(int[] cleared, int n) {
+        int i, j, k;
+
+        j = cleared[0];
+        k = 0;
+        for (i = cleared[0]; i < this.h; i++)
+            if (k < n && i == cleared[k])
+                k++;
+            else
+                System.arraycopy(this.rows, i * this.words, this.rows, (j++) * this.words, this.words);
+        Arrays.fill(this.rows, j * this.words, this.h * this.words, 0);
+    }
+
+    /**
+     * Writes the playing field and the current tetromino into a buffer, in the format of Tetris.getImage(long[]).
+     * @param buffer Buffer of at least width / 64 (rounded up) * height longs.
+     */
+    public void getImage(long[] buffer) {
+        int px;
+
+        System.arraycopy(this.rows, 0, buffer, 0, this.rows.length);
+        for (Point p : this.current.get()) {
+            px = this.x + p.x;
+            buffer[(this.y - p.y) * this.words + (px >> 6)] |= 1L << px;
+        }
+    }
+
+    /**
+     * Gets the playing field and the current tetromino, in the format of Tetris.getImage().
+     * @return Playing field where each block is represented by a single bit.
+     */
+    public LinkedList<BitSet> getImage() {
+        LinkedList<BitSet> ret = new LinkedList<>();
+        long[] buffer = new long[this.rows.length];
+        int i;
+
+        this.getImage(buffer);
+        for (i = 0; i < this.h; i++)
+            ret.add(BitSet.valueOf(Arrays.copyOfRange(buffer, i * this.words, (i + 1) * this.words)));
+
+        return ret;
+    }
+}
@@ -0,0 +1,225 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Encodes a game as a stream of spectator frames, which SpectatorDecoder turns back into the game's image.
+ * A keyframe carries the whole playing field; the other frames only carry the lines cleared since the previous frame and the rows which changed afterwards (usually the rows of the last locked tetromino).
+ * Every frame carries the current tetromino, the next one, the score, the lines and the level. Numbers are encoded as varints (see Replay).
+ * Each frame is encoded once and handed to every attached spectator.
+ * <p>
+ * Frame layout: kind (KEYFRAME or DELTA), sequence number, current tetromino (type, rotation, x, y), next tetromino type, score, lines, level, then
+ * <ul>
+ * <li>KEYFRAME: width, height, number of rows n up to the highest occupied one, and n rows;</li>
+ * <li>DELTA: number of clears, each one being its number of lines followed by their indices (as in IBoard.removeLines()), then the number of changed rows, each one being its distance from the previous changed row and its content.</li>
+ * </ul>
+ * Each row is encoded as its 64 bit words (see Tetris.getImageWords()).
+ */
+public class SpectatorEncoder {
+    public static final byte KEYFRAME = 1;
+    public static final byte DELTA = 2;
+
+    private static final int MAX_CLEARS = 16;
+
+    protected Tetris tetris;
+    protected int keyframeInterval;
+    protected int w, h, words;
+    protected long[] rows, sent;
+    protected int[] clears;
+    protected int nclears, clearsLength;
+    protected long sequence;
+    protected boolean keyframe;
+    protected ByteBuffer frame;
+    protected ILock lock;
+    protected CopyOnWriteArrayList<ISpectator> spectators;
+
+    /**
+     * Constructor. Attaches a lock Command to the game, in order to track the cleared lines. The first frame is a keyframe.
+     * @param t The game.
+     * @param keyframeInterval Number of frames between two keyframes.
+     */
+    public SpectatorEncoder(Tetris t, int keyframeInterval) {
+        this.tetris = t;
+        this.keyframeInterval = keyframeInterval;
+        this.w = t.getWidth();
+        this.h = t.getHeight();
+        this.words = t.getImageWords();
+        this.rows = t.createImageBuffer();
+        this.sent = t.createImageBuffer();
+        this.clears = new int[MAX_CLEARS * 5];
+        this.sequence = 0;
+        this.keyframe = true;
+        this.frame = ByteBuffer.allocate(64 + (10 * this.words + 5) * this.h + 10 * this.clears.length);
+        this.spectators = new CopyOnWriteArrayList<>();
+        this.lock = new ILock() {
+            public void exec(LockResult r) {
+                clear(r);
+            }
+        };
+        t.attachLock(this.lock);
+    }
+
+    /**
+     * Registers a spectator. The next frame is a keyframe, so it can start decoding right away.
+     * @param s Spectator to be added.
+     */
+    public void attach(ISpectator s) {
+        this.spectators.add(s);
+        this.keyframe = true;
+    }
+
+    /**
+     * Unregisters a spectator.
+     * @param s Spectator to be removed.
+     */
+    public void detach(ISpectator s) {
+        this.spectators.remove(s);
+    }
+
+    /**
+     * Forces the next frame to be a keyframe.
+     */
+    public void requestKeyframe() {
+        this.keyframe = true;
+    }
+
+    /**
+     * Stops tracking the game.
+     */
+    public void close() {
+        this.tetris.detachLock(this.lock);
+    }
+
+    /**
+     * Records the lines cleared by a lock and removes them from the copy of the last sent field, so the next delta only carries the rows which really changed.
+     * @param r The lock outcome.
+     */
+    private void clear(LockResult r) {
+        int i, j;
+
+        if (r.lines == 0 || this.keyframe)
+            return;
+        if (this.clearsLength + 1 + r.lines > this.clears.length) {
+            this.keyframe = true;
+            return;
+        }
+
+        this.clears[this.clearsLength++] = r.lines;
+        for (i = 0; i < r.lines; i++)
+            this.clears[this.clearsLength++] = r.rows[i];
+        this.nclears++;
+
+        // Same compaction as the boards: every row from the lowest cleared line moves down past the cleared ones.
+        j = r.rows[0];
+        for (i = r.rows[0]; i < this.h; i++)
+            if (!contains(r.rows, r.lines, i)) {
+                System.arraycopy(this.sent, i * this.words, this.sent, j * this.words, this.words);
+                j++;
+            }
+        for (; j < this.h; j++)
+            for (i = 0; i < this.words; i++)
+                this.sent[j * this.words + i] = 0;
+    }
+
+    private static boolean contains(int[] a, int n, int v) {
+        int i;
+
+        for (i = 0; i < n; i++)
+            if (a[i] == v)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Encodes the current state of the game.
+     * @return The frame, as a read-only buffer. It's overwritten by the next frame.
+     */
+    public ByteBuffer encode() {
+        ByteBuffer b = this.frame;
+        Tetris t = this.tetris;
+        boolean key = this.keyframe || this.sequence % this.keyframeInterval == 0;
+        int i, k, n, prev;
+
+        t.getField(this.rows);
+        b.clear();
+        b.put(key? KEYFRAME: DELTA);
+        Replay.putVarLong(b, this.sequence++);
+        b.put((byte)t.getCurrent().ordinal());
+        b.put((byte)t.getTetromino().getRotation());
+        Replay.putVarLong(b, t.getX());
+        Replay.putVarLong(b, t.getY());
+        b.put((byte)t.getNext().ordinal());
+        Replay.putVarLong(b, t.getScore());
+        Replay.putVarLong(b, t.getLines());
+        Replay.putVarLong(b, t.getLevel());
+
+        if (key) {
+            Replay.putVarLong(b, this.w);
+            Replay.putVarLong(b, this.h);
+            for (n = this.h; n > 0 && this.isEmpty(this.rows, n - 1); n--)
+                ;
+            Replay.putVarLong(b, n);
+            for (i = 0; i < n * this.words; i++)
+                Replay.putVarLong(b, this.rows[i]);
+        }
+        else {
+            Replay.putVarLong(b, this.nclears);
+            for (i = 0; i < this.clearsLength; i++)
+                Replay.putVarLong(b, this.clears[i]);
+
+            n = 0;
+            for (i = 0; i < this.h; i++)
+                if (this.differs(i))
+                    n++;
+            Replay.putVarLong(b, n);
+            prev = -1;
+            for (i = 0; i < this.h; i++)
+                if (this.differs(i)) {
+                    Replay.putVarLong(b, i - prev - 1);
+                    for (k = 0; k < this.words; k++)
+                        Replay.putVarLong(b, this.rows[i * this.words + k]);
+                    prev = i;
+                }
+        }
+
+        System.arraycopy(this.rows, 0, this.sent, 0, this.rows.length);
+        this.keyframe = false;
+        this.nclears = 0;
+        this.clearsLength = 0;
+        b.flip();
+
+        return b.asReadOnlyBuffer();
+    }
+
+    private boolean isEmpty(long[] r, int y) {
+        int k;
+
+        for (k = 0; k < this.words; k++)
+            if (r[y * this.words + k] != 0)
+                return false;
+
+        return true;
+    }
+
+    private boolean differs(int y) {
+        int k;
+
+        for (k = 0; k < this.words; k++)
+            if (this.rows[y * this.words + k] != this.sent[y * this.words + k])
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Encodes the current state of the game and hands the frame to every spectator. Each spectator gets its own view of the same bytes.
+     */
+    public void publish() {
+        ByteBuffer f = this.encode();
+
+        for (ISpectator s : this.spectators)
+            s.exec(f.duplicate());
+    }
+}
@@ -0,0 +1,74 @@
+package Tetris;
+
+/**
+ * SplitMix64 pseudorandom generator. It isn't synchronized and its whole state is a single long, so every game can own a cheap, reproducible stream.
+ */
+public class SplitMix64 {
+    static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    /**
+     * Constructor.
+     * @param seed Initial state.
+     */
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    public long getState() {
+        return this.state;
+    }
+
+    public void setState(long s) {
+        this.state = s;
+    }
+
+    /**
+     * Scrambles a 64 bit value. Consecutive inputs yield statistically independent outputs.
+     * @param z The value.
+     * @return The scrambled value.
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The next pseudorandom long.
+     */
+    public long nextLong() {
+        this.state += GOLDEN_GAMMA;
+
+        return mix(this.state);
+    }
+
+    /**
+     * Gets a pseudorandom integer in [0, bound), without modulo bias.
+     * @param bound Upper bound (exclusive), must be positive.
+     * @return The integer.
+     */
+    public int nextInt(int bound) {
+        int r = (int)(this.nextLong() >>> 33);
+        int m = bound - 1;
+        int u;
+
+        if ((bound & m) == 0)
+            return (int)((bound * (long)r) >> 31);
+
+        for (u = r; u - (r = u % bound) + m < 0; u = (int)(this.nextLong() >>> 33))
+            ;
+
+        return r;
+    }
+
+    /**
+     * Creates a new generator whose stream is independent from this one. This one advances by a single step.
+     * @return The new generator.
+     */
+    public SplitMix64 split() {
+        return new SplitMix64(mix(this.nextLong() ^ GOLDEN_GAMMA));
+    }
+}
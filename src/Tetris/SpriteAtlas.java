@@ -0,0 +1,200 @@
+package Tetris;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Sprites of the blocks, decoded eagerly and packed into a single managed image which Java2D can cache in video memory.
+ * Every sprite is pre-scaled to the cell size and takes a row of the atlas, where it's repeated several times: a run of adjacent blocks of the same kind is drawn with a single blit.
+ * Rows 0 to 6 hold one tinted sprite per Tetromino.Type_t (by ordinal), followed by the ghost and a plain block.
+ */
+public class SpriteAtlas {
+    public static final int GHOST = 7;
+    public static final int BLOCK = 8;
+    public static final int SPRITES = 9;
+
+    // Tints of the tetrominoes, by Type_t ordinal: O, J, L, I, S, Z, T.
+    private static final int[] TINTS = {0xf0d000, 0x2050e0, 0xf08000, 0x00c0e0, 0x30c030, 0xe02020, 0xa030d0};
+
+    protected int cell, run;
+    protected BufferedImage atlas;
+
+    /**
+     * Constructor. Builds the atlas for the default screen, or as a plain image when no screen is available.
+     * @param cell Size of a cell, in pixels.
+     * @param run Number of copies of every sprite: longer runs take several blits.
+     */
+    public SpriteAtlas(int cell, int run) {
+        this((GraphicsEnvironment.isHeadless())? null: GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration(), cell, run);
+    }
+
+    /**
+     * Constructor.
+     * @param gc Configuration of the destination surface, or null for a plain image.
+     * @param cell Size of a cell, in pixels.
+     * @param run Number of copies of every sprite: longer runs take several blits.
+     */
+    public SpriteAtlas(GraphicsConfiguration gc, int cell, int run) {
+        BufferedImage a, b;
+        Graphics2D g;
+        int i;
+
+        if (cell < 1 || run < 1)
+            throw new IllegalArgumentException("Invalid atlas size: " + cell + "x" + run);
+
+        this.cell = cell;
+        this.run = run;
+        a = scale(load("A.png"), cell);
+        b = scale(load("B.png"), cell);
+        if (gc != null)
+            this.atlas = gc.createCompatibleImage(cell * run, cell * SPRITES, Transparency.TRANSLUCENT);
+        else
+            this.atlas = new BufferedImage(cell * run, cell * SPRITES, BufferedImage.TYPE_INT_ARGB);
+
+        g = this.atlas.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        for (i = 0; i < TINTS.length; i++)
+            this.fill(g, i, tint(a, TINTS[i]));
+        this.fill(g, GHOST, b);
+        this.fill(g, BLOCK, a);
+        g.dispose();
+    }
+
+    public int getCell() {
+        return this.cell;
+    }
+
+    /**
+     * Decodes a sprite resource.
+     * @param name Name of the resource.
+     * @return The sprite.
+     */
+    private static BufferedImage load(String name) {
+        try {
+            return ImageIO.read(SpriteAtlas.class.getResource(name));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot load " + name, ex);
+        }
+    }
+
+    /**
+     * Scales a sprite to the cell size.
+     * @param src The sprite.
+     * @param cell Size of a cell, in pixels.
+     * @return The scaled sprite.
+     */
+    private static BufferedImage scale(BufferedImage src, int cell) {
+        BufferedImage ret = new BufferedImage(cell, cell, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = ret.createGraphics();
+
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(src, 0, 0, cell, cell, null);
+        g.dispose();
+
+        return ret;
+    }
+
+    /**
+     * Multiplies the color channels of a sprite by a tint: white becomes the tint, black stays black.
+     * @param src The sprite.
+     * @param rgb The tint.
+     * @return The tinted sprite.
+     */
+    private static BufferedImage tint(BufferedImage src, int rgb) {
+        BufferedImage ret = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int i, j, c;
+
+        for (j = 0; j < src.getHeight(); j++)
+            for (i = 0; i < src.getWidth(); i++) {
+                c = src.getRGB(i, j);
+                ret.setRGB(i, j, c & 0xff000000 | ((c >> 16 & 0xff) * (rgb >> 16 & 0xff) / 255) << 16 |
+                        ((c >> 8 & 0xff) * (rgb >> 8 & 0xff) / 255) << 8 | (c & 0xff) * (rgb & 0xff) / 255);
+            }
+
+        return ret;
+    }
+
+    /**
+     * Fills a row of the atlas with copies of a sprite.
+     * @param g The Graphics instance of the atlas.
+     * @param sprite Row of the atlas.
+     * @param src The sprite, already scaled.
+     */
+    private void fill(Graphics2D g, int sprite, BufferedImage src) {
+        for (int i = 0; i < this.run; i++)
+            g.drawImage(src, this.cell * i, this.cell * sprite, null);
+    }
+
+    /**
+     * Draws a single block.
+     * @param g The destination.
+     * @param sprite Row of the atlas: a Type_t ordinal, GHOST or BLOCK.
+     * @param x Left edge, in pixels.
+     * @param y Top edge, in pixels.
+     */
+    public void draw(Graphics g, int sprite, int x, int y) {
+        this.drawRun(g, sprite, x, y, 1);
+    }
+
+    /**
+     * Draws a horizontal run of identical blocks, with a blit every run copies.
+     * @param g The destination.
+     * @param sprite Row of the atlas: a Type_t ordinal, GHOST or BLOCK.
+     * @param x Left edge of the first block, in pixels.
+     * @param y Top edge, in pixels.
+     * @param n Number of blocks.
+     */
+    public void drawRun(Graphics g, int sprite, int x, int y, int n) {
+        int sy = this.cell * sprite;
+        int k, dw;
+
+        while (n > 0) {
+            k = Math.min(n, this.run);
+            dw = this.cell * k;
+            g.drawImage(this.atlas, x, y, x + dw, y + this.cell, 0, sy, dw, sy + this.cell, null);
+            x += dw;
+            n -= k;
+        }
+    }
+
+    /**
+     * Draws the blocks of a row word, one blit per run of adjacent blocks.
+     * @param g The destination.
+     * @param bits The row word: bit i is the i-th column from x.
+     * @param sprite Row of the atlas: a Type_t ordinal, GHOST or BLOCK.
+     * @param x Left edge of the column of bit 0, in pixels.
+     * @param y Top edge, in pixels.
+     */
+    public void drawRow(Graphics g, long bits, int sprite, int x, int y) {
+        int i, n;
+
+        while (bits != 0) {
+            i = Long.numberOfTrailingZeros(bits);
+            n = Long.numberOfTrailingZeros(~(bits >>> i));
+            this.drawRun(g, sprite, x + this.cell * i, y, n);
+            bits &= (n == 64)? 0: ~(((1L << n) - 1) << i);
+        }
+    }
+
+    /**
+     * Draws a row of cells holding different sprites, one blit per run of adjacent cells with the same one.
+     * @param g The destination.
+     * @param cells The cells: 0 is empty, anything else is 1 + a row of the atlas.
+     * @param from Index of the first cell of the row.
+     * @param n Number of cells in the row.
+     * @param x Left edge of the first cell, in pixels.
+     * @param y Top edge, in pixels.
+     */
+    public void drawRow(Graphics g, byte[] cells, int from, int n, int x, int y) {
+        int i, j;
+
+        for (i = 0; i < n; i = j) {
+            for (j = i + 1; j < n && cells[from + j] == cells[from + i]; j++)
+                ;
+            if (cells[from + i] != 0)
+                this.drawRun(g, cells[from + i] - 1, x + this.cell * i, y, j - i);
+        }
+    }
+}
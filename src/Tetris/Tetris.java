@@ -1,9 +1,10 @@
 package Tetris;
 
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.LinkedList;
-import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Tetris class. It keeps track of the playing field, the current tetromino and the next one.
@@ -11,7 +12,7 @@ import java.util.Random;
 public class Tetris {
     protected int w;
     protected int h;
-    protected LinkedList<BitSet> field;
+    protected IBoard field;
     protected Tetromino current, next;
     protected int x, y;
     protected long score;
@@ -21,9 +22,14 @@ public class Tetris {
     protected int[] statistics;
     protected int lines;
     protected int consecutiveLinesCleared;
-    private Random r;
-    protected LinkedList<IGameOver> gameOver;
-    protected LinkedList<ILevelUp> levelUp;
+    protected IPieceGenerator generator;
+    protected CopyOnWriteArrayList<IGameOver> gameOver;
+    protected CopyOnWriteArrayList<ILevelUp> levelUp;
+    protected CopyOnWriteArrayList<ILock> lock;
+    protected LockResult lockResult;
+    protected EventBus events;
+    protected GameEvent event;
+    protected ReplayRecorder recorder;
     
     public int getWidth() {
         return this.w;
@@ -46,8 +52,7 @@ public class Tetris {
      * @param c Game over Command to be removed.
      */
     public void detachGameOver(IGameOver c) {
-        if (this.gameOver.contains(c))
-            this.gameOver.remove(c);
+        this.gameOver.remove(c);
     }
     
     /**
@@ -63,8 +68,59 @@ public class Tetris {
      * @param c Level up Command to be removed.
      */
     public void detachLevelUp(ILevelUp c) {
-        if (this.levelUp.contains(c))
-            this.levelUp.remove(c);
+        this.levelUp.remove(c);
+    }
+    
+    /**
+     * Registers a lock Command.
+     * @param c Lock Command to be added.
+     */
+    public void attachLock(ILock c) {
+        this.lock.add(c);
+    }
+    
+    /**
+     * Unregisters a lock Command.
+     * @param c Lock Command to be removed.
+     */
+    public void detachLock(ILock c) {
+        this.lock.remove(c);
+    }
+    
+    /**
+     * Gets the bus which publishes the game events (spawn, lock, lines cleared, level up and game over). It's synchronous unless replaced by setEventBus().
+     * @return The event bus.
+     */
+    public EventBus getEventBus() {
+        return this.events;
+    }
+    
+    /**
+     * Replaces the event bus, e.g. with an asynchronous one, so slow listeners don't stall the game. Listeners attached to the previous bus are not moved.
+     * @param b The new event bus.
+     */
+    public void setEventBus(EventBus b) {
+        this.events = b;
+    }
+    
+    /**
+     * Gets the outcome of the last lock. The instance is reused by every lock.
+     * @return The last lock, or an empty one if no tetromino has been locked yet.
+     */
+    public LockResult getLastLock() {
+        return this.lockResult;
+    }
+    
+    /**
+     * Starts recording every input and update applied to this game.
+     * @param r The recorder, or null to stop recording.
+     */
+    public void setRecorder(ReplayRecorder r) {
+        this.recorder = r;
+    }
+    
+    public ReplayRecorder getRecorder() {
+        return this.recorder;
     }
     
     public void setScore(long s) {
@@ -87,6 +143,8 @@ public class Tetris {
     }
     
     public void setDropping(boolean d) {
+        if (this.recorder != null && d != this.dropping)
+            this.recorder.record(d? Replay.Op_t.DROP_ON: Replay.Op_t.DROP_OFF);
         this.dropping = d;
     }
     
@@ -117,6 +175,27 @@ public class Tetris {
         return this.next.getType();
     }
     
+    /**
+     * @return The current tetromino, including its rotation.
+     */
+    public Tetromino getTetromino() {
+        return this.current;
+    }
+    
+    /**
+     * @return Column of the current tetromino's pivot.
+     */
+    public int getX() {
+        return this.x;
+    }
+    
+    /**
+     * @return Row of the current tetromino's pivot.
+     */
+    public int getY() {
+        return this.y;
+    }
+    
     /**
      * Constructor. Creates an empty playing field and generates the first two tetrominoes.
      * @param w Width of the playing field.
@@ -124,27 +203,52 @@ public class Tetris {
      * @param level Initial level.
      */
     public Tetris(int w, int h, int level) {
+        this(w, h, level, new UniformGenerator(SplitMix64.mix(System.nanoTime())));
+    }
+    
+    /**
+     * Constructor. Creates an empty playing field and generates the first two tetrominoes from a seeded sequence, so the same seed always yields the same tetrominoes.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     * @param seed Seed of the tetromino sequence.
+     */
+    public Tetris(int w, int h, int level, long seed) {
+        this(w, h, level, new UniformGenerator(seed));
+    }
+    
+    /**
+     * Constructor. Creates an empty playing field and generates the first two tetrominoes.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param level Initial level.
+     * @param generator Source of the tetromino sequence. Seeded generators make the whole game reproducible.
+     */
+    public Tetris(int w, int h, int level, IPieceGenerator generator) {
         int i;
         
         this.w = w;
         this.h = h;
         this.x = w / 2 - 1;
         this.y = h - 1;
-        this.field = new LinkedList<BitSet>();
-        for (i = 0; i < h; i++)
-            this.field.add(new BitSet(w));
+        this.field = (w <= Board.MAX_WIDTH)? new Board(w, h): new WideBoard(w, h);
         
-        this.gameOver = new LinkedList<IGameOver>();
-        this.levelUp = new LinkedList<ILevelUp>();
+        this.gameOver = new CopyOnWriteArrayList<IGameOver>();
+        this.levelUp = new CopyOnWriteArrayList<ILevelUp>();
+        this.lock = new CopyOnWriteArrayList<ILock>();
+        this.lockResult = new LockResult();
+        this.events = new EventBus();
+        this.event = new GameEvent();
+        this.event.sequence = 0;
         
         this.statistics = new int[7];
         for (i = 0; i < 7; i++)
             this.statistics[i] = 0;
         
-        this.r = new Random();
-        this.current = new Tetromino(Tetromino.Type_t.values()[r.nextInt(7)]);
+        this.generator = generator;
+        this.current = Tetromino.get(this.generator.next());
         this.statistics[this.current.getType().ordinal()]++;
-        this.next = new Tetromino(Tetromino.Type_t.values()[r.nextInt(7)]);
+        this.next = Tetromino.get(this.generator.next());
         this.score = 0;
         this.level = (level > 0)? level: 1;
         this.lines = 0;
@@ -159,68 +263,230 @@ public class Tetris {
      */
     public LinkedList<BitSet> getImage() {
         LinkedList<BitSet> ret = new LinkedList<>();
-        int i, j;
+        long[] buffer = this.createImageBuffer();
+        int words = this.field.getWords();
+        int i;
         
+        this.getImage(buffer);
         for (i = 0; i < this.h; i++)
-            ret.add(new BitSet(this.w));
+            ret.add(BitSet.valueOf(Arrays.copyOfRange(buffer, i * words, (i + 1) * words)));
         
-        for (i = 0; i < this.h; i++)
-            for (j = 0; j < this.w; j++)
-                ret.get(i).set(j, this.field.get(i).get(j));
+        return ret;
+    }
+    
+    /**
+     * Gets the number of 64 bit words used by each row of getImage(long[]).
+     * @return Words per row.
+     */
+    public int getImageWords() {
+        return this.field.getWords();
+    }
+    
+    /**
+     * Allocates a buffer large enough for getImage(long[]).
+     * @return An empty buffer.
+     */
+    public long[] createImageBuffer() {
+        return new long[this.field.getWords() * this.h];
+    }
+    
+    /**
+     * Writes the playing field and the current tetromino into a reusable buffer, without allocating anything.
+     * Row i starts at index i * getImageWords() (row 0 is the bottom one) and bit j of a row is column j.
+     * @param buffer Buffer created by createImageBuffer(). Its previous content is overwritten.
+     */
+    public void getImage(long[] buffer) {
+        int words = this.field.getWords();
+        int i, px;
+        
+        this.field.copyRows(buffer);
         
         // Add the four blocks of the current tetromino.
-        for (i = 0; i < 4; i++)
-            ret.get(this.y - this.current.get()[i].y).set(this.x + this.current.get()[i].x, true);
+        for (i = 0; i < 4; i++) {
+            px = this.x + this.current.get()[i].x;
+            buffer[(this.y - this.current.get()[i].y) * words + (px >> 6)] |= 1L << px;
+        }
+    }
+    
+    /**
+     * Writes the playing field, without the current tetromino, into a reusable buffer. The layout is the same as getImage(long[]).
+     * @param buffer Buffer created by createImageBuffer(). Its previous content is overwritten.
+     */
+    public void getField(long[] buffer) {
+        this.field.copyRows(buffer);
+    }
+    
+    /**
+     * Takes a snapshot of the game.
+     * @return The snapshot.
+     */
+    public GameState save() {
+        GameState ret = new GameState(this);
+        
+        this.save(ret);
         
         return ret;
     }
     
+    /**
+     * Takes a snapshot of the game into an existing instance, without allocating.
+     * @param s Snapshot created for this game (or another one of the same size and generator class).
+     */
+    public void save(GameState s) {
+        this.field.copyRows(s.rows);
+        this.field.copyHeights(s.heights);
+        s.hash = this.field.hash();
+        s.current = this.current;
+        s.next = this.next;
+        s.x = this.x;
+        s.y = this.y;
+        s.score = this.score;
+        s.level = this.level;
+        s.lines = this.lines;
+        s.consecutiveLinesCleared = this.consecutiveLinesCleared;
+        s.dropping = this.dropping;
+        s.droppingHeight = this.droppingHeight;
+        System.arraycopy(this.statistics, 0, s.statistics, 0, 7);
+        this.generator.saveState(s.generator);
+    }
+    
+    /**
+     * Brings the game back to a snapshot. Listeners are not notified and the replay recorder (if any) isn't informed, so a recorded game must not be restored.
+     * @param s Snapshot of this game (or of another one of the same size and generator class).
+     */
+    public void restore(GameState s) {
+        if (s.w != this.w || s.h != this.h)
+            throw new IllegalArgumentException("Invalid snapshot size: " + s.w + "x" + s.h);
+        
+        this.field.load(s.rows, s.heights, s.hash);
+        this.current = s.current;
+        this.next = s.next;
+        this.x = s.x;
+        this.y = s.y;
+        this.score = s.score;
+        this.level = s.level;
+        this.lines = s.lines;
+        this.consecutiveLinesCleared = s.consecutiveLinesCleared;
+        this.dropping = s.dropping;
+        this.droppingHeight = s.droppingHeight;
+        System.arraycopy(s.statistics, 0, this.statistics, 0, 7);
+        this.generator.loadState(s.generator);
+    }
+    
+    /**
+     * Gets the Zobrist hash of the playing field, without the current tetromino. It's maintained incrementally and equals Zobrist.hash() of the buffer filled by getField().
+     * @return The hash.
+     */
+    public long hash() {
+        return this.field.hash();
+    }
+    
     /**
      * Check if the current tetromino collides with either another block or the playing field's boundaries.
      * @return True if there is a collision.
      */
     private boolean checkCollision() {
-        boolean ret = false;
+        return this.collides(this.current, this.x, this.y);
+    }
+    
+    /**
+     * Check if a tetromino collides with either another block or the playing field's boundaries. Each row of the tetromino is tested at once.
+     * @param t The tetromino.
+     * @param x Column of the tetromino's pivot.
+     * @param y Row of the tetromino's pivot.
+     * @return True if there is a collision.
+     */
+    protected boolean collides(Tetromino t, int x, int y) {
+        long[] rows = t.getRows();
         int i;
         
-        for (i = 0; i < 4; i++)
-            if (this.x + this.current.get()[i].x >= 0 && this.x + this.current.get()[i].x < this.w &&
-                    this.y - this.current.get()[i].y >= 0 && this.y - this.current.get()[i].y < this.h)
-                ret |= false;
-            else
-                ret |= true;
+        if (x + t.getMinX() < 0 || x + t.getMaxX() >= this.w || y - t.getMaxY() < 0 || y - t.getMinY() >= this.h)
+            return true;
         
-        if (!ret)
-            for (i = 0; i < 4; i++)
-                ret |= this.field.get(this.y - this.current.get()[i].y).get(this.x + this.current.get()[i].x);
+        for (i = 0; i < rows.length; i++)
+            if (this.field.intersects(y - t.getMinY() - i, rows[i], x + t.getMinX()))
+                return true;
         
-        return ret;
+        return false;
     }
     
     /**
      * Rotates the tetromino counterclockwise. If there is a collision, it rolls back to the previous state.
      */
     public void rotateLeft() {
-        this.current.rotateLeft();
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.ROTATE_LEFT);
+        this.current = this.current.rotateLeft();
         if (this.checkCollision())
-            this.current.rotateRight();
+            this.current = this.current.rotateRight();
     }
     
     /**
      * Rotates the tetromino clockwise. If there is a collision, it rolls back to the previous state.
      */
     public void rotateRight() {
-        this.current.rotateRight();
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.ROTATE_RIGHT);
+        this.current = this.current.rotateRight();
         if (this.checkCollision())
-            this.current.rotateLeft();
+            this.current = this.current.rotateLeft();
     }
     
     /**
-     * Moves the tetromino down one block. If there is a collision it has landed and it must check for lines to be cleared and generate a new tetromino.
+     * Computes the row where the current tetromino would land if dropped straight down (the ghost tetromino), without moving it.
+     * When the tetromino is above the stack it's answered from the column heights, checking only its own columns; otherwise (e.g. it has slid under an overhang) it falls back to testing each row.
+     * @return Row of the pivot once landed.
      */
-    public void moveDown() {
+    public int getGhostY() {
+        int[] bottoms = this.current.getBottoms();
+        int left = this.x + this.current.getMinX();
+        int ret = Integer.MIN_VALUE;
         int i;
         
+        for (i = 0; i < bottoms.length; i++)
+            ret = Math.max(ret, this.field.getColumnHeight(left + i) + bottoms[i]);
+        
+        if (ret > this.y) {
+            ret = this.y;
+            while (!this.collides(this.current, this.x, ret - 1))
+                ret--;
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Drops the tetromino straight to its landing row and locks it. It scores as a drop from the current row.
+     */
+    public void hardDrop() {
+        int ghost;
+        
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.HARD_DROP);
+        if (this.checkCollision())
+            return;
+        
+        ghost = this.getGhostY();
+        if (!this.dropping)
+            this.droppingHeight = 0;
+        this.droppingHeight += this.y - ghost + 1;
+        this.y = ghost;
+        this.lock(true);
+    }
+    
+    /**
+     * Moves the tetromino down one block. If there is a collision it has landed and it must check for lines to be cleared and generate a new tetromino.
+     */
+    public void moveDown() {
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.DOWN);
+        this.down();
+    }
+    
+    /**
+     * Moves the tetromino down one block, locking it if there is a collision.
+     */
+    private void down() {
         this.y--;
         
         if (this.dropping)
@@ -230,60 +496,123 @@ public class Tetris {
         
         if (this.checkCollision()) {
             this.y++;
-            for (i = 0; i < 4; i++)
-                this.field.get(this.y - this.current.get()[i].y).set(this.x + this.current.get()[i].x, true);
-            
-            
-            this.consecutiveLinesCleared = 0;
-            for (i = 0; i < this.h; )
-                if (this.checkLine(i)) {
-                    this.removeLine(i);
-                    this.lines++;
-                    this.consecutiveLinesCleared++;
-                }
-                else
-                    i++;
-            
-            if (this.dropping) {
-                this.score += this.droppingHeight;
-                this.droppingHeight = 0;
-            }
-            
-            
-            this.current = this.next;
-            this.next = new Tetromino(Tetromino.Type_t.values()[r.nextInt(7)]);
-            this.statistics[this.current.getType().ordinal()]++;
-            this.y = this.h - 1;
-            this.x = this.w / 2 - 1;
-            
-            switch (this.consecutiveLinesCleared) {
-                case 1:
-                    this.score += 40 * (this.level + 1);
-                    break;
-                case 2:
-                    this.score += 100 * (this.level + 1);
-                    break;
-                case 3:
-                    this.score += 300 * (this.level + 1);
-                    break;
-                case 4:
-                    this.score += 1200 * (this.level + 1);
-                    break;
-            }
-            
-            if (this.lines >= this.level * 10 && this.lines < this.level * 11) {
-                this.level++;
-                for (Iterator<ILevelUp> iter = this.levelUp.iterator(); iter.hasNext();)
-                    iter.next().exec(this.level);
+            this.lock(this.dropping);
+        }
+    }
+    
+    /**
+     * Locks the current tetromino in place, clears the full lines, updates the score and generates a new tetromino.
+     * @param dropped True if the tetromino has been dropped, so the dropping height is added to the score.
+     */
+    private void lock(boolean dropped) {
+        long[] rows = this.current.getRows();
+        LockResult r = this.lockResult;
+        GameEvent e;
+        long score = this.score;
+        int i, row;
+        
+        for (i = 0; i < rows.length; i++)
+            this.field.or(this.y - this.current.getMinY() - i, rows[i], this.x + this.current.getMinX());
+        
+        // Only the rows touched by the tetromino can have been filled.
+        r.lines = 0;
+        for (row = this.y - this.current.getMaxY(); row <= this.y - this.current.getMinY(); row++)
+            if (this.field.isFull(row))
+                r.rows[r.lines++] = row;
+        this.field.removeLines(r.rows, r.lines);
+        this.lines += r.lines;
+        this.consecutiveLinesCleared = r.lines;
+        
+        r.type = this.current.getType();
+        r.rotation = this.current.getRotation();
+        r.x = this.x;
+        r.y = this.y;
+        r.dropped = dropped;
+        
+        if (dropped) {
+            this.score += this.droppingHeight;
+            this.droppingHeight = 0;
+        }
+        
+        
+        this.current = this.next;
+        this.next = Tetromino.get(this.generator.next());
+        this.statistics[this.current.getType().ordinal()]++;
+        this.y = this.h - 1;
+        this.x = this.w / 2 - 1;
+        
+        switch (this.consecutiveLinesCleared) {
+            case 1:
+                this.score += 40 * (this.level + 1);
+                break;
+            case 2:
+                this.score += 100 * (this.level + 1);
+                break;
+            case 3:
+                this.score += 300 * (this.level + 1);
+                break;
+            case 4:
+                this.score += 1200 * (this.level + 1);
+                break;
+        }
+        
+        r.score = this.score - score;
+        for (Iterator<ILock> iter = this.lock.iterator(); iter.hasNext();)
+            iter.next().exec(r);
+        
+        if (this.events.hasListeners()) {
+            e = this.newEvent(GameEvent.Event_t.LOCK);
+            e.piece = r.type;
+            e.rotation = r.rotation;
+            e.x = r.x;
+            e.y = r.y;
+            e.dropped = r.dropped;
+            this.events.publish(e);
+            if (r.lines > 0) {
+                e = this.newEvent(GameEvent.Event_t.LINES_CLEARED);
+                e.lines = r.lines;
+                System.arraycopy(r.rows, 0, e.rows, 0, r.lines);
+                this.events.publish(e);
             }
-            
+            e = this.newEvent(GameEvent.Event_t.SPAWN);
+            e.piece = this.current.getType();
+            e.rotation = this.current.getRotation();
+            e.x = this.x;
+            e.y = this.y;
+            this.events.publish(e);
+        }
+        
+        if (this.lines >= this.level * 10 && this.lines < this.level * 11) {
+            this.level++;
+            for (Iterator<ILevelUp> iter = this.levelUp.iterator(); iter.hasNext();)
+                iter.next().exec(this.level);
+            if (this.events.hasListeners())
+                this.events.publish(this.newEvent(GameEvent.Event_t.LEVEL_UP));
         }
     }
     
+    /**
+     * Prepares the reusable event instance.
+     * @param type Type of the event.
+     * @return The event, with its sequence number, the current score and level filled in.
+     */
+    private GameEvent newEvent(GameEvent.Event_t type) {
+        GameEvent e = this.event;
+        
+        e.type = type;
+        e.sequence++;
+        e.score = this.score;
+        e.level = this.level;
+        
+        return e;
+    }
+    
     /**
      * Moves the tetromino left. If there is a collision, it rolls back to the previous state.
      */
     public void moveLeft() {
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.LEFT);
         this.x--;
         if (this.checkCollision())
             this.x++;
@@ -293,6 +622,8 @@ public class Tetris {
      * Moves the tetromino right. If there is a collision, it rolls back to the previous state.
      */
     public void moveRight() {
+        if (this.recorder != null)
+            this.recorder.record(Replay.Op_t.RIGHT);
         this.x++;
         if (this.checkCollision())
             this.x--;
@@ -302,35 +633,16 @@ public class Tetris {
      * Updates the game. If there is an initial collision (the current tetromino is stuck) fires the gameover, otherwise moves the tetromino downwards.
      */
     public void update() {
-        if (this.checkCollision())
+        if (this.recorder != null)
+            this.recorder.update();
+        
+        if (this.checkCollision()) {
             for (Iterator<IGameOver> iter = this.gameOver.iterator(); iter.hasNext();)
                 iter.next().exec();
-                
+            if (this.events.hasListeners())
+                this.events.publish(this.newEvent(GameEvent.Event_t.GAME_OVER));
+        }
         else
-            this.moveDown();
-    }
-    
-    /**
-     * Checks if a line is full and needs to be cleared.
-     * @param i The line to be checked.
-     * @return True if the line is full.
-     */
-    private boolean checkLine(int i) {
-        boolean ret = true;
-        int j;
-        
-        for (j = 0; j < this.w; j++)
-            ret &= this.field.get(i).get(j);
-        
-        return ret;
-    }
-    
-    /**
-     * Clears a line from the field.
-     * @param i The line to be cleared.
-     */
-    private void removeLine(int i) {
-        this.field.remove(i);
-        this.field.add(new BitSet(this.w));
+            this.down();
     }
 }
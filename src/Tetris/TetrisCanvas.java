@@ -0,0 +1,92 @@
+package Tetris;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Actively rendered Canvas. Frames are drawn by the game loop thread into a page-flipped BufferStrategy (backed by accelerated volatile images where available) instead of being painted by Swing on the event dispatch thread.
+ * The playing field is drawn on top of a status line.
+ */
+public class TetrisCanvas extends Canvas implements IRenderer {
+    private static final int CELL = 20;
+    private static final int STATUS = 20;
+    
+    private int w, h;
+    private SpriteAtlas atlas;
+    private long[] image;
+    private BufferStrategy strategy;
+    
+    /**
+     * Constructor.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     */
+    public TetrisCanvas(int w, int h) {
+        super();
+        
+        this.w = w;
+        this.h = h;
+        this.setPreferredSize(new Dimension(CELL * w, CELL * h + STATUS));
+        this.setIgnoreRepaint(true);
+        this.setBackground(Color.WHITE);
+        this.setFocusable(true);
+    }
+    
+    /**
+     * Draws a frame and shows it. Nothing is drawn until the Canvas is displayable. Frames whose buffers are lost while drawing are drawn again.
+     * @param t The game to be drawn. Its playing field must have the size given to the constructor.
+     */
+    public void exec(Tetris t) {
+        Graphics g;
+        
+        if (this.strategy == null) {
+            if (!this.isDisplayable())
+                return;
+            this.createBufferStrategy(2);
+            this.strategy = this.getBufferStrategy();
+            this.atlas = new SpriteAtlas(this.getGraphicsConfiguration(), CELL, Math.min(this.w, 64));
+            this.image = t.createImageBuffer();
+        }
+        
+        do {
+            do {
+                g = this.strategy.getDrawGraphics();
+                this.draw(g, t);
+                g.dispose();
+            } while (this.strategy.contentsRestored());
+            this.strategy.show();
+        } while (this.strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+    
+    /**
+     * Draws the locked blocks, the ghost tetromino, the current tetromino and the status line. Locked blocks are drawn a run at a time from the rows of the field image.
+     * @param g The Graphics instance of the back buffer.
+     * @param t The game to be drawn.
+     */
+    private void draw(Graphics g, Tetris t) {
+        int words = t.getImageWords();
+        int x = t.getX();
+        int y = t.getY();
+        int gy = t.getGhostY();
+        Tetromino current = t.getTetromino();
+        int sprite = current.getType().ordinal();
+        int i, j;
+        
+        g.setColor(this.getBackground());
+        g.fillRect(0, 0, this.getWidth(), this.getHeight());
+        
+        t.getField(this.image);
+        for (j = 0; j < this.h; j++)
+            for (i = 0; i < words; i++)
+                this.atlas.drawRow(g, this.image[j * words + i], SpriteAtlas.BLOCK, 64 * CELL * i, CELL * (this.h - 1 - j));
+        for (Point p : current.get())
+            this.atlas.draw(g, SpriteAtlas.GHOST, CELL * (x + p.x), CELL * (this.h - 1 - gy + p.y));
+        for (Point p : current.get())
+            this.atlas.draw(g, sprite, CELL * (x + p.x), CELL * (this.h - 1 - y + p.y));
+        
+        g.setColor(Color.BLACK);
+        g.drawLine(0, CELL * this.h, CELL * this.w, CELL * this.h);
+        g.drawString("Score:  " + t.getScore() + " Lines: " + t.getLines() + " Lv: " + t.getLevel() + " Next: " + t.getNext().toString(), 2, CELL * this.h + STATUS - 5);
+    }
+}
@@ -3,46 +3,127 @@ package Tetris;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.BitSet;
-import java.util.LinkedList;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Custom JPanel derived class. It overrides the default paint behavior, creates and manages the Tetris instance (the model is NOT decoupled from its representation).
+ * Locked blocks are cached in a back buffer which is only updated when a tetromino locks, and only the cells which actually changed are repainted.
+ * Blocks are blitted from a SpriteAtlas. Since the board only knows which cells are taken, the panel keeps the type of every locked block in order to draw it with its own sprite.
  */
 public class TetrisPanel extends JPanel {
+    private static final int CELL = 20;
+    private static final int UNDO = 32;
+    private static final int TICK = 10;
+    
     private Timer timer1, timer2;
     private Tetris tetris;
     private IGameOver go;
     private ILevelUp lu;
-    private Image a, b;
+    private ILock lo;
+    private SpriteAtlas atlas;
+    private byte[] cells;
     private JLabel stat;
-    private boolean movingLeft, movingRight, movingDown;
+    private InputQueue inputs;
+    private AutoShift shift;
+    private BufferedImage stack;
+    private Rectangle piece, ghost;
+    private long seed;
+    private ReplayPlayer player;
+    private Metrics metrics;
+    private GameState[] history;
+    private byte[][] cellHistory;
+    private int undoTop, undoCount;
+    private long pieces;
+    
+    /**
+     * Presses a key. The event is queued and applied by the next input tick; while playing a replay it's ignored.
+     * @param k The key.
+     */
+    public void press(Simulation.Key_t k) {
+        if (this.player == null)
+            this.inputs.press(k);
+    }
     
-    public void setMovingLeft(boolean b) {
-        this.movingLeft = b;
+    /**
+     * Releases a key. The event is queued and applied by the next input tick.
+     * @param k The key.
+     */
+    public void release(Simulation.Key_t k) {
+        if (this.player == null)
+            this.inputs.release(k);
     }
     
-    public void setMovingRight(boolean b) {
-        this.movingRight = b;
+    /**
+     * Takes back the last locked tetromino, bringing the game back to the moment it appeared. Up to UNDO tetrominoes can be taken back; while recording or playing a replay nothing happens.
+     */
+    public void undo() {
+        if (this.player != null || this.tetris.getRecorder() != null)
+            return;
+        
+        if (this.undoCount > 1) {
+            this.undoTop = (this.undoTop + UNDO - 1) % UNDO;
+            this.undoCount--;
+        }
+        this.tetris.restore(this.history[this.undoTop]);
+        this.inputs.clear();
+        this.shift.reset();
+        System.arraycopy(this.cellHistory[this.undoTop], 0, this.cells, 0, this.cells.length);
+        this.pieces = this.countPieces();
+        this.drawStack(0);
+        this.timer1.setDelay(LevelUp.getDelay(this.tetris.getLevel()));
+        this.timer1.start();
+        this.timer2.start();
+        this.piece = this.getPieceBounds(this.tetris.getY());
+        this.ghost = this.getPieceBounds(this.tetris.getGhostY());
+        this.repaint();
     }
-    public void setMovingDown(boolean b) {
-        this.movingDown = b;
+    
+    /**
+     * @return Number of tetrominoes which have appeared so far.
+     */
+    private long countPieces() {
+        long ret = 0;
+        
+        for (int n : this.tetris.getStatistics())
+            ret += n;
+        
+        return ret;
     }
     
-    public void setDropping(boolean b) {
-        this.tetris.setDropping(b);
+    /**
+     * Forgets the undo history and stores the current state as its only entry.
+     */
+    private void resetHistory() {
+        this.undoTop = 0;
+        this.undoCount = 1;
+        this.pieces = this.countPieces();
+        this.save(0);
     }
     
-    public void rotateLeft() {
-        this.tetris.rotateLeft();
+    /**
+     * Saves the game and the types of the locked blocks in an entry of the undo history.
+     * @param i Index of the entry.
+     */
+    private void save(int i) {
+        if (this.history[i] == null) {
+            this.history[i] = new GameState(this.tetris);
+            this.cellHistory[i] = new byte[this.cells.length];
+        }
+        this.tetris.save(this.history[i]);
+        System.arraycopy(this.cells, 0, this.cellHistory[i], 0, this.cells.length);
     }
     
-    public void rotateRight() {
-        this.tetris.rotateRight();
+    public Metrics getMetrics() {
+        return this.metrics;
     }
     
     /**
-     * Constructor. Creates the Tetris instance and the timers, then attaches the GameOver and LevelUp Commands.
+     * Constructor. Creates the Tetris instance and the timers, then attaches the GameOver, LevelUp and lock Commands.
      * @param stat JLabel which will print the game statistics.
      */
     public TetrisPanel(JLabel stat) {
@@ -51,64 +132,243 @@ public class TetrisPanel extends JPanel {
         this.setFocusable(true);
         this.requestFocusInWindow();
         this.stat = stat;
-        this.a = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("A.png"));
-        this.b = Toolkit.getDefaultToolkit().getImage(this.getClass().getResource("B.png"));
         
-        this.tetris = new Tetris(10, 20, 3); // Initial level: 3.
+        this.seed = SplitMix64.mix(System.nanoTime());
+        this.tetris = new Tetris(10, 20, 3, this.seed); // Initial level: 3.
+        // The sprites are decoded before the first paint, since the back buffer is drawn outside of paintComponent.
+        this.atlas = new SpriteAtlas(CELL, this.tetris.getWidth());
+        this.cells = new byte[this.tetris.getWidth() * this.tetris.getHeight()];
+        this.stack = new BufferedImage(CELL * this.tetris.getWidth(), CELL * this.tetris.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        this.piece = this.getPieceBounds(this.tetris.getY());
+        this.ghost = this.getPieceBounds(this.tetris.getGhostY());
+        this.player = null;
+        this.metrics = new Metrics();
+        this.metrics.attach(this.tetris);
+        this.history = new GameState[UNDO];
+        this.cellHistory = new byte[UNDO][];
+        this.inputs = new InputQueue();
+        this.shift = new AutoShift(this.tetris, AutoShift.DAS / TICK, AutoShift.ARR / TICK);
+        this.resetHistory();
         
         // Game timer: determines the playing speed.
-        this.timer1 = new Timer(1000 / 3, new ActionListener() {
+        this.timer1 = new Timer(LevelUp.getDelay(this.tetris.getLevel()), new ActionListener() {
                 public void actionPerformed(ActionEvent e) {
-                    tetris.update();
+                    long t = metrics.start();
+                    
+                    metrics.timer(t, timer1.getDelay());
+                    if (player == null)
+                        tetris.update();
+                    else if (!player.step())
+                        timer1.stop();
+                    metrics.tick(t);
                     stat.setText("Score:  " + tetris.getScore() + " Lines: " + tetris.getLines() + " Lv: " + tetris.getLevel() + " Next: " + tetris.getNext().toString());
-                    repaint();
+                    refresh();
                 }
             });
         
-        // Input timer: determines the frequency of repeated inputs.
-        this.timer2 = new Timer(100, new ActionListener() {
+        // Input timer: applies the queued key events, then repeats the held keys. DAS and ARR are counted in its ticks.
+        this.timer2 = new Timer(TICK, new ActionListener() {
            public void actionPerformed(ActionEvent e) {
-               if (movingLeft) {
-                   tetris.moveLeft();
-                   repaint();
-               }
-               if (movingRight) {
-                   tetris.moveRight();
-                   repaint();
-               }
-               if (movingDown) {
-                   tetris.moveDown();
-                   repaint();
-               }
-           } 
+               inputs.drain(System.nanoTime(), shift, metrics);
+               shift.tick();
+               refresh();
+           }
         });
         
             timer1.start();
             timer2.start();
             this.go = new GameOver(this.timer1, this.timer2);
             this.lu = new LevelUp(this.timer1);
+            this.lo = new ILock() {
+                public void exec(LockResult r) {
+                    updateStack(r);
+                }
+            };
             this.tetris.attachGameOver(this.go);
             this.tetris.attachLevelUp(this.lu);
-            this.movingLeft = false;
-            this.movingRight = false;
-            this.movingDown = false;
+            this.tetris.attachLock(this.lo);
+    }
+    
+    /**
+     * Records the game, which must not have started yet. The replay is written once the game is over.
+     * @param file Destination of the replay.
+     */
+    public void record(final Path file) {
+        final ReplayRecorder r = new ReplayRecorder(this.tetris, Replay.GENERATOR_UNIFORM, this.seed);
+        
+        this.tetris.setRecorder(r);
+        // Write the replay before the game over message is displayed.
+        this.tetris.detachGameOver(this.go);
+        this.tetris.attachGameOver(new IGameOver() {
+            public void exec() {
+                if (tetris.getRecorder() == r) {
+                    tetris.setRecorder(null);
+                    try {
+                        r.finish(tetris).write(file);
+                    } catch (IOException ex) {
+                        Logger.getLogger(TetrisPanel.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            }
+        });
+        this.tetris.attachGameOver(this.go);
     }
     
     /**
-     * Paints the JPanel. Overrides the default behavior by drawing an image for each occupied block of the playing field.
+     * Replaces the game with the playback of a replay, at the normal playing speed. Inputs are ignored from now on.
+     * @param r The replay. Its playing field must have the same size as the current one.
+     */
+    public void play(Replay r) {
+        Graphics2D g;
+        
+        if (r.getWidth() != this.tetris.getWidth() || r.getHeight() != this.tetris.getHeight())
+            throw new IllegalArgumentException("Invalid replay size: " + r.getWidth() + "x" + r.getHeight());
+        
+        this.tetris.detachGameOver(this.go);
+        this.tetris.detachLevelUp(this.lu);
+        this.tetris.detachLock(this.lo);
+        this.metrics.detach(this.tetris);
+        this.tetris = r.createTetris();
+        this.metrics.attach(this.tetris);
+        this.metrics.restartTimer();
+        this.tetris.attachGameOver(this.go);
+        this.tetris.attachLevelUp(this.lu);
+        this.tetris.attachLock(this.lo);
+        this.player = new ReplayPlayer(r, this.tetris);
+        this.inputs.clear();
+        this.shift.setTetris(this.tetris);
+        Arrays.fill(this.cells, (byte)0);
+        this.resetHistory();
+        
+        g = this.stack.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, this.stack.getWidth(), this.stack.getHeight());
+        g.dispose();
+        this.timer1.setDelay(LevelUp.getDelay(this.tetris.getLevel()));
+        this.piece = this.getPieceBounds(this.tetris.getY());
+        this.ghost = this.getPieceBounds(this.tetris.getGhostY());
+        this.repaint();
+    }
+    
+    /**
+     * Computes the area covered by the current tetromino.
+     * @param y Row of the tetromino's pivot.
+     * @return Bounding box of the tetromino, in pixels.
+     */
+    private Rectangle getPieceBounds(int y) {
+        Tetromino t = this.tetris.getTetromino();
+        int h = this.tetris.getHeight();
+        
+        return new Rectangle(CELL * (this.tetris.getX() + t.getMinX()), CELL * (h - 1 - y + t.getMinY()),
+                CELL * (t.getMaxX() - t.getMinX() + 1), CELL * (t.getMaxY() - t.getMinY() + 1));
+    }
+    
+    /**
+     * Repaints the cells covered by the current and the ghost tetromino, both before and after they moved. Nothing is repainted if they didn't move.
+     * If a new tetromino has appeared, the game is also saved in the undo history.
+     */
+    private void refresh() {
+        Rectangle p = this.getPieceBounds(this.tetris.getY());
+        Rectangle g = this.getPieceBounds(this.tetris.getGhostY());
+        long n = this.countPieces();
+        
+        if (n != this.pieces) {
+            this.pieces = n;
+            this.undoTop = (this.undoTop + 1) % UNDO;
+            this.undoCount = Math.min(this.undoCount + 1, UNDO);
+            this.save(this.undoTop);
+        }
+        
+        if (!p.equals(this.piece)) {
+            this.repaint(this.piece);
+            this.repaint(p);
+            this.piece = p;
+        }
+        if (!g.equals(this.ghost)) {
+            this.repaint(this.ghost);
+            this.repaint(g);
+            this.ghost = g;
+        }
+    }
+    
+    /**
+     * Updates the back buffer after a lock. Only the locked blocks are drawn, unless some lines have been cleared: in that case every row from the lowest locked block upwards is redrawn.
+     * @param r The lock outcome.
+     */
+    private void updateStack(LockResult r) {
+        Graphics2D g;
+        Tetromino t = Tetromino.get(r.type, r.rotation);
+        int w = this.tetris.getWidth();
+        int h = this.tetris.getHeight();
+        int k, src, dst;
+        
+        for (Point p : t.get())
+            if (r.y - p.y >= 0 && r.y - p.y < h)
+                this.cells[(r.y - p.y) * w + r.x + p.x] = (byte)(r.type.ordinal() + 1);
+        
+        if (r.lines == 0) {
+            g = this.stack.createGraphics();
+            for (Point p : t.get()) {
+                this.atlas.draw(g, r.type.ordinal(), CELL * (r.x + p.x), CELL * (h - 1 - r.y + p.y));
+                this.repaint(CELL * (r.x + p.x), CELL * (h - 1 - r.y + p.y), CELL, CELL);
+            }
+            g.dispose();
+        }
+        else {
+            // Compact the cell types the same way the board removed the cleared lines.
+            k = 0;
+            dst = r.rows[0];
+            for (src = r.rows[0]; src < h; src++)
+                if (k < r.lines && src == r.rows[k])
+                    k++;
+                else
+                    System.arraycopy(this.cells, src * w, this.cells, w * dst++, w);
+            Arrays.fill(this.cells, dst * w, h * w, (byte)0);
+            this.drawStack(r.y - t.getMaxY());
+        }
+    }
+    
+    /**
+     * Redraws the back buffer from a row upwards, with a blit per run of blocks of the same type.
+     * @param bottom Lowest row to be redrawn.
+     */
+    private void drawStack(int bottom) {
+        Graphics2D g = this.stack.createGraphics();
+        int w = this.tetris.getWidth();
+        int h = this.tetris.getHeight();
+        int j;
+        
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, CELL * w, CELL * (h - bottom));
+        g.setComposite(AlphaComposite.SrcOver);
+        for (j = bottom; j < h; j++)
+            this.atlas.drawRow(g, this.cells, j * w, w, 0, CELL * (h - 1 - j));
+        this.repaint(0, 0, CELL * w, CELL * (h - bottom));
+        g.dispose();
+    }
+    
+    /**
+     * Paints the JPanel. Overrides the default behavior by drawing the back buffer of the locked blocks, the ghost tetromino and the current tetromino. Drawing is clipped to the repainted area.
      * @param g The Graphics instance associated to this component.
      */
     @Override
     public void paintComponent(Graphics g) {
+        long t = this.metrics.start();
+        
         super.paintComponent(g);
         
-        LinkedList<BitSet> field = this.tetris.getImage();
-        int w = this.tetris.getWidth();
         int h = this.tetris.getHeight();
+        int x = this.tetris.getX();
+        int y = this.tetris.getY();
+        int gy = this.tetris.getGhostY();
+        Tetromino current = this.tetris.getTetromino();
+        int sprite = current.getType().ordinal();
         
-        for (int i = 0; i < w; i++)
-            for (int j = 0; j < h; j++)
-                if (field.get(j).get(i))
-                    g.drawImage(a, 20 * i, 20 * (h - 1 - j), this);
+        g.drawImage(this.stack, 0, 0, null);
+        for (Point p : current.get())
+            this.atlas.draw(g, SpriteAtlas.GHOST, CELL * (x + p.x), CELL * (h - 1 - gy + p.y));
+        for (Point p : current.get())
+            this.atlas.draw(g, sprite, CELL * (x + p.x), CELL * (h - 1 - y + p.y));
+        this.metrics.paint(t);
     }
 }
@@ -1,194 +1,227 @@
 package Tetris;
 
+import java.util.Arrays;
+
 /**
  * Tetromino data structure. Each tetromino is composed of four blocks. One of them acts as a pivot and the other three can rotate around it.
+ * Every (type, rotation) pair is precomputed once and shared, so a Tetromino is an immutable handle: rotating or spawning a tetromino never allocates.
  */
 class Tetromino {
     public enum Type_t {O, J, L, I, S, Z, T};
-    
-    private Point[][] piece;
-    private int rotation;
-    private Type_t type;
-    
-    public Type_t getType() {
-        return this.type;
+
+    /**
+     * Block offsets (x0, y0, x1, y1, x2, y2, x3, y3) for each type and rotation. One of the four blocks is always at (0,0).
+     */
+    private static final int[][][] OFFSETS = {
+        { // O: the four rotations yield the same result.
+            {0, 0, 1, 0, 0, 1, 1, 1},
+            {0, 0, 1, 0, 0, 1, 1, 1},
+            {0, 0, 1, 0, 0, 1, 1, 1},
+            {0, 0, 1, 0, 0, 1, 1, 1}
+        },
+        { // J: every rotation is different.
+            {0, 0, -1, 0, 1, 0, 1, 1},
+            {0, 0, 0, 1, 0, -1, 1, -1},
+            {0, 0, -1, 0, 1, 0, -1, -1},
+            {0, 0, 0, -1, 0, 1, -1, 1}
+        },
+        { // L
+            {0, 0, -1, 0, 1, 0, -1, 1},
+            {0, 0, 0, -1, 0, 1, 1, 1},
+            {0, 0, -1, 0, 1, 0, 1, -1},
+            {0, 0, 0, 1, 0, -1, -1, -1}
+        },
+        { // I: rotations 0 and 2, and rotations 1 and 3 are equal.
+            {0, 0, 1, 0, -1, 0, -2, 0},
+            {0, 0, 0, 1, 0, -1, 0, -2},
+            {0, 0, 1, 0, -1, 0, -2, 0},
+            {0, 0, 0, 1, 0, -1, 0, -2}
+        },
+        { // S
+            {0, 0, -1, 1, 1, 0, 0, 1},
+            {0, 0, 1, 0, 1, 1, 0, -1},
+            {0, 0, -1, 1, 1, 0, 0, 1},
+            {0, 0, 1, 0, 1, 1, 0, -1}
+        },
+        { // Z
+            {0, 0, 0, 1, 1, 1, -1, 0},
+            {0, 0, -1, 0, -1, 1, 0, -1},
+            {0, 0, 0, 1, 1, 1, -1, 0},
+            {0, 0, -1, 0, -1, 1, 0, -1}
+        },
+        { // T
+            {0, 0, -1, 0, 1, 0, 0, 1},
+            {0, 0, 0, -1, 1, 0, 0, 1},
+            {0, 0, 0, -1, 1, 0, -1, 0},
+            {0, 0, 0, -1, 0, 1, -1, 0}
+        }
+    };
+
+    /**
+     * Number of distinct rotations for each type.
+     */
+    private static final int[] DISTINCT = {1, 4, 4, 2, 2, 2, 4};
+
+    private static final Type_t[] TYPES = Type_t.values();
+
+    private static final Tetromino[][] TABLE;
+
+    static {
+        int i, j;
+
+        TABLE = new Tetromino[7][4];
+        for (i = 0; i < 7; i++)
+            for (j = 0; j < 4; j++)
+                TABLE[i][j] = new Tetromino(TYPES[i], j);
     }
-    
+
+    private final Type_t type;
+    private final int rotation;
+    private final Point[] blocks;
+    private final int minX, maxX, minY, maxY;
+    private final long[] rows;
+    private final int[] bottoms;
+
     /**
-     * Constructor. Creates the matrix containing all the rotations for the given tetromino.7
-     * 
+     * Constructor. Computes the blocks, bounding box and row masks of a single rotation.
      * @param t Type of the tetromino.
+     * @param rotation Rotation (0 to 3).
      */
-    public Tetromino(Type_t t) {
-        int i, j;
-        
+    private Tetromino(Type_t t, int rotation) {
+        int[] offsets = OFFSETS[t.ordinal()][rotation];
+        int i, minX, maxX, minY, maxY;
+
         this.type = t;
-        
-        this.piece = new Point[4][];
-        for (i = 0; i < 4; i++)
-        {
-            this.piece[i] = new Point[4];
-            for (j = 0; j < 4; j++)
-                this.piece[i][j] = new Point();
+        this.rotation = rotation;
+        this.blocks = new Point[4];
+        for (i = 0; i < 4; i++) {
+            this.blocks[i] = new Point();
+            this.blocks[i].x = offsets[2 * i];
+            this.blocks[i].y = offsets[2 * i + 1];
         }
-        this.piece[0][0].x = this.piece[0][0].y = this.piece[1][0].x = this.piece[1][0].y =
-                this.piece[2][0].x = this.piece[2][0].y = this.piece[3][0].x = this.piece[3][0].y = 0; // One of the four blocks is always at (0,0).
-        
-        switch (t)
-        {
-            case O: // The four rotations yield the same result.
-                this.piece[0][1].x = this.piece[1][1].x = this.piece[2][1].x = this.piece[3][1].x = 1;
-                this.piece[0][1].y = this.piece[1][1].y = this.piece[2][1].y = this.piece[3][1].y = 0;
-                this.piece[0][2].x = this.piece[1][2].x = this.piece[2][2].x = this.piece[3][2].x = 0;
-                this.piece[0][2].y = this.piece[1][2].y = this.piece[2][2].y = this.piece[3][2].y = 1;
-                this.piece[0][3].x = this.piece[1][3].x = this.piece[2][3].x = this.piece[3][3].x = 1;
-                this.piece[0][3].y = this.piece[1][3].y = this.piece[2][3].y = this.piece[3][3].y = 1;
-                break;
-            case I: // Rotations 0 and 2, and rotations 1 and 3 are equal.
-                this.piece[0][1].x = this.piece[2][1].x = 1;
-                this.piece[0][1].y = this.piece[2][1].y = 0;
-                this.piece[0][2].x = this.piece[2][2].x = -1;
-                this.piece[0][2].y = this.piece[2][2].y = 0;
-                this.piece[0][3].x = this.piece[2][3].x = -2;
-                this.piece[0][3].y = this.piece[2][3].y = 0;
-                this.piece[1][1].x = this.piece[3][1].x = 0;
-                this.piece[1][1].y = this.piece[3][1].y = 1;
-                this.piece[1][2].x = this.piece[3][2].x = 0;
-                this.piece[1][2].y = this.piece[3][2].y = -1;
-                this.piece[1][3].x = this.piece[3][3].x = 0;
-                this.piece[1][3].y = this.piece[3][3].y = -2;
-                break;
-            case S:
-                this.piece[0][1].x = this.piece[2][1].x = -1;
-                this.piece[0][1].y = this.piece[2][1].y = 1;
-                this.piece[0][2].x = this.piece[2][2].x = 1;
-                this.piece[0][2].y = this.piece[2][2].y = 0;
-                this.piece[0][3].x = this.piece[2][3].x = 0;
-                this.piece[0][3].y = this.piece[2][3].y = 1;
-                this.piece[1][1].x = this.piece[3][1].x = 1;
-                this.piece[1][1].y = this.piece[3][1].y = 0;
-                this.piece[1][2].x = this.piece[3][2].x = 1;
-                this.piece[1][2].y = this.piece[3][2].y = 1;
-                this.piece[1][3].x = this.piece[3][3].x = 0;
-                this.piece[1][3].y = this.piece[3][3].y = -1;
-                break;
-            case Z:
-                this.piece[0][1].x = this.piece[2][1].x = 0;
-                this.piece[0][1].y = this.piece[2][1].y = 1;
-                this.piece[0][2].x = this.piece[2][2].x = 1;
-                this.piece[0][2].y = this.piece[2][2].y = 1;
-                this.piece[0][3].x = this.piece[2][3].x = -1;
-                this.piece[0][3].y = this.piece[2][3].y = 0;
-                this.piece[1][1].x = this.piece[3][1].x = -1;
-                this.piece[1][1].y = this.piece[3][1].y = 0;
-                this.piece[1][2].x = this.piece[3][2].x = -1;
-                this.piece[1][2].y = this.piece[3][2].y = 1;
-                this.piece[1][3].x = this.piece[3][3].x = 0;
-                this.piece[1][3].y = this.piece[3][3].y = -1;
-                break;
-            case J: // Every rotation is different.
-                this.piece[0][1].x = -1;
-                this.piece[0][1].y = 0;
-                this.piece[0][2].x = 1;
-                this.piece[0][2].y = 0;
-                this.piece[0][3].x = 1;
-                this.piece[0][3].y = 1;
-                this.piece[1][1].x = 0;
-                this.piece[1][1].y = 1;
-                this.piece[1][2].x = 0;
-                this.piece[1][2].y = -1;
-                this.piece[1][3].x = 1;
-                this.piece[1][3].y = -1;
-                this.piece[2][1].x = -1;
-                this.piece[2][1].y = 0;
-                this.piece[2][2].x = 1;
-                this.piece[2][2].y = 0;
-                this.piece[2][3].x = -1;
-                this.piece[2][3].y = -1;
-                this.piece[3][1].x = 0;
-                this.piece[3][1].y = -1;
-                this.piece[3][2].x = 0;
-                this.piece[3][2].y = 1;
-                this.piece[3][3].x = -1;
-                this.piece[3][3].y = 1;
-                break;
-            case L:
-                this.piece[0][1].x = -1;
-                this.piece[0][1].y = 0;
-                this.piece[0][2].x = 1;
-                this.piece[0][2].y = 0;
-                this.piece[0][3].x = -1;
-                this.piece[0][3].y = 1;
-                this.piece[1][1].x = 0;
-                this.piece[1][1].y = -1;
-                this.piece[1][2].x = 0;
-                this.piece[1][2].y = 1;
-                this.piece[1][3].x = 1;
-                this.piece[1][3].y = 1;
-                this.piece[2][1].x = -1;
-                this.piece[2][1].y = 0;
-                this.piece[2][2].x = 1;
-                this.piece[2][2].y = 0;
-                this.piece[2][3].x = 1;
-                this.piece[2][3].y = -1;
-                this.piece[3][1].x = 0;
-                this.piece[3][1].y = 1;
-                this.piece[3][2].x = 0;
-                this.piece[3][2].y = -1;
-                this.piece[3][3].x = -1;
-                this.piece[3][3].y = -1;
-                break;
-            case T:
-                this.piece[0][1].x = -1;
-                this.piece[0][1].y = 0;
-                this.piece[0][2].x = 1;
-                this.piece[0][2].y = 0;
-                this.piece[0][3].x = 0;
-                this.piece[0][3].y = 1;
-                this.piece[1][1].x = 0;
-                this.piece[1][1].y = -1;
-                this.piece[1][2].x = 1;
-                this.piece[1][2].y = 0;
-                this.piece[1][3].x = 0;
-                this.piece[1][3].y = 1;
-                this.piece[2][1].x = 0;
-                this.piece[2][1].y = -1;
-                this.piece[2][2].x = 1;
-                this.piece[2][2].y = 0;
-                this.piece[2][3].x = -1;
-                this.piece[2][3].y = 0;
-                this.piece[3][1].x = 0;
-                this.piece[3][1].y = -1;
-                this.piece[3][2].x = 0;
-                this.piece[3][2].y = 1;
-                this.piece[3][3].x = -1;
-                this.piece[3][3].y = 0;
-                break;
+
+        minX = maxX = minY = maxY = 0;
+        for (i = 0; i < 4; i++) {
+            minX = Math.min(minX, this.blocks[i].x);
+            maxX = Math.max(maxX, this.blocks[i].x);
+            minY = Math.min(minY, this.blocks[i].y);
+            maxY = Math.max(maxY, this.blocks[i].y);
         }
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+
+        this.rows = new long[maxY - minY + 1];
+        for (i = 0; i < 4; i++)
+            this.rows[this.blocks[i].y - minY] |= 1L << (this.blocks[i].x - minX);
+
+        this.bottoms = new int[maxX - minX + 1];
+        Arrays.fill(this.bottoms, Integer.MIN_VALUE);
+        for (i = 0; i < 4; i++)
+            this.bottoms[this.blocks[i].x - minX] = Math.max(this.bottoms[this.blocks[i].x - minX], this.blocks[i].y);
+    }
+
+    /**
+     * Gets the shared tetromino of the given type in its initial rotation.
+     * @param t Type of the tetromino.
+     * @return The tetromino.
+     */
+    public static Tetromino get(Type_t t) {
+        return TABLE[t.ordinal()][0];
+    }
+
+    /**
+     * Gets the shared tetromino of the given type and rotation.
+     * @param t Type of the tetromino.
+     * @param rotation Rotation (0 to 3).
+     * @return The tetromino.
+     */
+    public static Tetromino get(Type_t t, int rotation) {
+        return TABLE[t.ordinal()][rotation & 3];
+    }
+
+    /**
+     * Gets a type from its ordinal without cloning Type_t.values().
+     * @param i Ordinal of the type (0 to 6).
+     * @return The type.
+     */
+    public static Type_t typeOf(int i) {
+        return TYPES[i];
+    }
+
+    public Type_t getType() {
+        return this.type;
+    }
 
-        this.rotation = 0;        
+    public int getRotation() {
+        return this.rotation;
     }
-    
+
+    /**
+     * Gets the number of rotations yielding different shapes (1 for O, 2 for I, S and Z, 4 otherwise). Rotations from this number onwards repeat the previous ones.
+     * @return Number of distinct rotations.
+     */
+    public int getDistinctRotations() {
+        return DISTINCT[this.type.ordinal()];
+    }
+
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMaxX() {
+        return this.maxX;
+    }
+
+    public int getMinY() {
+        return this.minY;
+    }
+
+    public int getMaxY() {
+        return this.maxY;
+    }
+
+    /**
+     * Gets the blocks grouped by row. Element k holds the blocks with y == getMinY() + k, where bit i is the block with x == getMinX() + i.
+     * The array is shared and must not be modified.
+     * @return Row masks.
+     */
+    public long[] getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Gets the lowest block of each column. Element c is the largest y among the blocks with x == getMinX() + c (larger y values are lower on the field).
+     * The array is shared and must not be modified.
+     * @return Lowest block offsets.
+     */
+    public int[] getBottoms() {
+        return this.bottoms;
+    }
+
     /**
      * Rotates the tetromino counterclockwise.
+     * @return The same tetromino in the next rotation.
      */
-    public void rotateLeft() {
-        this.rotation = (this.rotation + 1) % 4;
+    public Tetromino rotateLeft() {
+        return TABLE[this.type.ordinal()][(this.rotation + 1) % 4];
     }
-    
+
     /**
      * Rotates the tetromino clockwise.
+     * @return The same tetromino in the previous rotation.
      */
-    public void rotateRight() {
-        this.rotation = (this.rotation + 3) % 4;
+    public Tetromino rotateRight() {
+        return TABLE[this.type.ordinal()][(this.rotation + 3) % 4];
     }
-    
+
     /**
-     * Gets the current rotation's blocks.
+     * Gets the current rotation's blocks. The array is shared and must not be modified.
      * @return The four blocks for the current rotation.
      */
     public Point[] get() {
-        return this.piece[this.rotation];
+        return this.blocks;
     }
-    
+
 }
@@ -0,0 +1,182 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Block of training records in columnar form: one array per field, so an exported file can be loaded a column at a time and each column compresses well on its own.
+ * A record describes one lock: the playing field the tetromino was placed on, the tetromino, the following one, the chosen placement and its outcome.
+ * A chunk is filled by a single game thread, then handed to the writer of a TrainingExporter and recycled. No encapsulation is provided.
+ */
+public class TrainingChunk {
+    public int w, h, words;
+    public int capacity;
+    public int size;
+    /**
+     * Game of each record (e.g. its seed).
+     */
+    public long[] games;
+    /**
+     * Playing field before the lock, h * words longs per record, in the layout of Tetris.getField(). It's encoded as (w + 7) / 8 bytes per row, bit i of byte k being column 8 * k + i.
+     */
+    public long[] rows;
+    /**
+     * Ordinals of the locked tetromino and of the following one.
+     */
+    public byte[] current, next;
+    /**
+     * Placement: rotation and pivot position of the tetromino once locked.
+     */
+    public byte[] rotation;
+    public short[] x, y;
+    public byte[] lines;
+    public int[] score;
+
+    /**
+     * Constructor. Creates an empty chunk.
+     * @param capacity Maximum number of records.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     */
+    public TrainingChunk(int capacity, int w, int h) {
+        this.w = w;
+        this.h = h;
+        this.words = (w + 63) / 64;
+        this.capacity = capacity;
+        this.size = 0;
+        this.games = new long[capacity];
+        this.rows = new long[capacity * h * this.words];
+        this.current = new byte[capacity];
+        this.next = new byte[capacity];
+        this.rotation = new byte[capacity];
+        this.x = new short[capacity];
+        this.y = new short[capacity];
+        this.lines = new byte[capacity];
+        this.score = new int[capacity];
+    }
+
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Appends a record. The chunk must not be full.
+     * @param game Game of the record.
+     * @param field Playing field before the lock.
+     * @param r The lock outcome.
+     * @param next The tetromino following the locked one.
+     */
+    public void add(long game, long[] field, LockResult r, Tetromino.Type_t next) {
+        int i = this.size++;
+        int stride = this.h * this.words;
+
+        this.games[i] = game;
+        System.arraycopy(field, 0, this.rows, i * stride, stride);
+        this.current[i] = (byte)r.type.ordinal();
+        this.next[i] = (byte)next.ordinal();
+        this.rotation[i] = (byte)r.rotation;
+        this.x[i] = (short)r.x;
+        this.y[i] = (short)r.y;
+        this.lines[i] = (byte)r.lines;
+        this.score[i] = (int)r.score;
+    }
+
+    /**
+     * Gets the encoded size of a single record.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @return Size in bytes.
+     */
+    public static int getRecordSize(int w, int h) {
+        return 20 + h * ((w + 7) / 8);
+    }
+
+    /**
+     * @return Size of the encoded records, in bytes.
+     */
+    public int getEncodedSize() {
+        return this.size * getRecordSize(this.w, this.h);
+    }
+
+    /**
+     * Writes the records column after column. The buffer must be little endian and have getEncodedSize() bytes left.
+     * @param b Destination buffer.
+     */
+    public void encode(ByteBuffer b) {
+        int n = this.size;
+
+        b.asLongBuffer().put(this.games, 0, n);
+        b.position(b.position() + 8 * n);
+        this.encodeRows(b);
+        b.put(this.current, 0, n);
+        b.put(this.next, 0, n);
+        b.put(this.rotation, 0, n);
+        b.asShortBuffer().put(this.x, 0, n);
+        b.position(b.position() + 2 * n);
+        b.asShortBuffer().put(this.y, 0, n);
+        b.position(b.position() + 2 * n);
+        b.put(this.lines, 0, n);
+        b.asIntBuffer().put(this.score, 0, n);
+        b.position(b.position() + 4 * n);
+    }
+
+    /**
+     * Reads records written by encode(), replacing the content of the chunk.
+     * @param b Source buffer, little endian.
+     * @param n Number of records. It must not exceed the capacity.
+     */
+    public void decode(ByteBuffer b, int n) {
+        this.size = n;
+        b.asLongBuffer().get(this.games, 0, n);
+        b.position(b.position() + 8 * n);
+        this.decodeRows(b);
+        b.get(this.current, 0, n);
+        b.get(this.next, 0, n);
+        b.get(this.rotation, 0, n);
+        b.asShortBuffer().get(this.x, 0, n);
+        b.position(b.position() + 2 * n);
+        b.asShortBuffer().get(this.y, 0, n);
+        b.position(b.position() + 2 * n);
+        b.get(this.lines, 0, n);
+        b.asIntBuffer().get(this.score, 0, n);
+        b.position(b.position() + 4 * n);
+    }
+
+    /**
+     * Writes the rows column, keeping only the bytes of each row which hold columns of the field.
+     * @param b Destination buffer.
+     */
+    private void encodeRows(ByteBuffer b) {
+        int bytes = (this.w + 7) / 8;
+        int i, j, k;
+        long v;
+
+        for (i = 0; i < this.size * this.h; i++)
+            for (j = 0; j < bytes; j += 8) {
+                v = this.rows[i * this.words + (j >> 3)];
+                for (k = j; k < bytes && k < j + 8; k++, v >>>= 8)
+                    b.put((byte)v);
+            }
+    }
+
+    /**
+     * Reads the rows column written by encodeRows().
+     * @param b Source buffer.
+     */
+    private void decodeRows(ByteBuffer b) {
+        int bytes = (this.w + 7) / 8;
+        int i, j, k;
+        long v;
+
+        for (i = 0; i < this.size * this.h; i++)
+            for (j = 0; j < bytes; j += 8) {
+                v = 0;
+                for (k = j; k < bytes && k < j + 8; k++)
+                    v |= (b.get() & 0xffL) << (8 * (k - j));
+                this.rows[i * this.words + (j >> 3)] = v;
+            }
+    }
+}
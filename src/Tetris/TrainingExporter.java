@@ -0,0 +1,401 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.Deflater;
+
+/**
+ * Streams training records (see TrainingChunk) from running games to a file. Each game thread fills a chunk of its own, so recording a lock is a couple of array copies with no
+ * synchronization; full chunks are queued to a background writer thread, which encodes them column by column, optionally compresses them and writes them through two alternating
+ * direct buffers, so the encoding of a chunk overlaps the asynchronous write of the previous one. Game threads never wait for the writer: if it falls behind by more than a bounded
+ * number of chunks, the records are dropped and counted.
+ * File layout (little endian): magic, version, compression flag, width and height, then blocks made of the number of records, the encoded size, the stored size and the stored bytes.
+ * A block is compressed (deflate) when its stored size is smaller than its encoded size. See TrainingReader.
+ */
+public class TrainingExporter implements Runnable {
+    /**
+     * Maximum default number of records per chunk.
+     */
+    public static final int CHUNK = 4096;
+
+    /**
+     * Default size of the playing fields of a chunk, in bytes. It bounds the memory of a chunk whatever the board size.
+     */
+    public static final int CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Default number of chunks which may exist at once, either being filled or waiting for the writer.
+     */
+    public static final int MAX_CHUNKS = 64;
+
+    static final int MAGIC = 0x44525454;
+    static final byte VERSION = 1;
+    static final int HEADER = 14;
+
+    /**
+     * Chunk being filled by a game thread.
+     */
+    private static class Slot {
+        public TrainingChunk chunk;
+    }
+
+    /**
+     * Lock Command recording a game. The field before each lock is kept from the previous one.
+     */
+    private class Recorder implements ILock {
+        private Tetris tetris;
+        private long game;
+        private long[] field;
+
+        public Recorder(Tetris t, long game) {
+            this.tetris = t;
+            this.game = game;
+            this.field = new long[h * words];
+            t.getField(this.field);
+        }
+
+        public void exec(LockResult r) {
+            Slot s = local.get();
+
+            s.chunk.add(this.game, this.field, r, this.tetris.getCurrent());
+            if (s.chunk.isFull())
+                flush(s);
+            this.tetris.getField(this.field);
+        }
+    }
+
+    protected int w, h, words;
+    protected int capacity, maxChunks;
+    protected boolean compress;
+    protected AsynchronousFileChannel channel;
+    protected ConcurrentLinkedQueue<TrainingChunk> pending, free;
+    protected ConcurrentLinkedQueue<Slot> slots;
+    protected ThreadLocal<Slot> local;
+    protected AtomicInteger chunks;
+    protected AtomicLong dropped;
+    protected volatile long records;
+    protected volatile long position;
+    protected volatile IOException error;
+    protected volatile boolean running;
+    protected Thread thread;
+
+    // Writer thread state.
+    private Deflater deflater;
+    private byte[] raw, packed;
+    private ByteBuffer[] buffers;
+    private Future<Integer>[] writes;
+    private long[] offsets;
+    private int active;
+
+    /**
+     * Gets the default number of records per chunk: as many playing fields as CHUNK_BYTES hold, but at least one and at most CHUNK.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @return Number of records.
+     */
+    public static int getCapacity(int w, int h) {
+        long field = Math.max(8L * h * ((w + 63) / 64), 1);
+
+        return (int)Math.max(1, Math.min(CHUNK, CHUNK_BYTES / field));
+    }
+
+    /**
+     * Constructor. Uses the default chunk size (see getCapacity()) and limit.
+     * @param file Destination file. It's overwritten if it exists.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @param compress True to compress the blocks.
+     * @throws IOException If the file can't be written.
+     */
+    public TrainingExporter(Path file, int w, int h, boolean compress) throws IOException {
+        this(file, w, h, compress, getCapacity(w, h), MAX_CHUNKS);
+    }
+
+    /**
+     * Constructor. Writes the file header and starts the writer thread.
+     * @param file Destination file. It's overwritten if it exists.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @param compress True to compress the blocks.
+     * @param capacity Number of records per chunk.
+     * @param maxChunks Maximum number of chunks existing at once.
+     * @throws IOException If the file can't be written.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TrainingExporter(Path file, int w, int h, boolean compress, int capacity, int maxChunks) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (w <= 0 || h <= 0 || h > Short.MAX_VALUE)
+            throw new IllegalArgumentException("Invalid board size: " + w + "x" + h);
+
+        this.w = w;
+        this.h = h;
+        this.words = (w + 63) / 64;
+        this.capacity = capacity;
+        this.maxChunks = maxChunks;
+        this.compress = compress;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.free = new ConcurrentLinkedQueue<>();
+        this.slots = new ConcurrentLinkedQueue<>();
+        this.local = new ThreadLocal<Slot>() {
+            @Override
+            protected Slot initialValue() {
+                Slot s = new Slot();
+
+                // Every thread gets a chunk, even beyond the limit.
+                s.chunk = new TrainingChunk(capacity, TrainingExporter.this.w, TrainingExporter.this.h);
+                chunks.incrementAndGet();
+                slots.add(s);
+
+                return s;
+            }
+        };
+        this.chunks = new AtomicInteger();
+        this.dropped = new AtomicLong();
+        this.records = 0;
+
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.raw = new byte[0];
+        this.packed = new byte[0];
+        this.buffers = new ByteBuffer[] {ByteBuffer.allocateDirect(0), ByteBuffer.allocateDirect(0)};
+        this.writes = new Future[2];
+        this.offsets = new long[2];
+        this.active = 0;
+
+        b.putInt(MAGIC);
+        b.put(VERSION);
+        b.put((byte)(compress? 1: 0));
+        b.putInt(w);
+        b.putInt(h);
+        b.flip();
+        this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.position = 0;
+        while (b.hasRemaining())
+            this.position += this.await(this.channel.write(b, this.position));
+
+        this.running = true;
+        this.thread = new Thread(this, "TrainingExporter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return Number of records written so far.
+     */
+    public long getRecords() {
+        return this.records;
+    }
+
+    /**
+     * @return Number of records dropped because the writer fell behind or failed.
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return Size of the file written so far, in bytes.
+     */
+    public long getBytes() {
+        return this.position;
+    }
+
+    /**
+     * Records every lock of a game from now on. The game may run on any thread, but it must stay on the same thread from one lock to the next (as in a Simulation).
+     * @param t The game. Its playing field must have the size given to the constructor.
+     * @param game Identifier of the game in the records, e.g. its seed.
+     * @return The attached lock Command, to be detached from the game in order to stop recording it.
+     */
+    public ILock attach(Tetris t, long game) {
+        ILock ret;
+
+        if (t.getWidth() != this.w || t.getHeight() != this.h)
+            throw new IllegalArgumentException("Invalid board size: " + t.getWidth() + "x" + t.getHeight());
+
+        ret = new Recorder(t, game);
+        t.attachLock(ret);
+
+        return ret;
+    }
+
+    /**
+     * Creates a chunk, unless the limit has been reached.
+     * @return The new chunk, or null.
+     */
+    private TrainingChunk newChunk() {
+        if (this.chunks.incrementAndGet() > this.maxChunks) {
+            this.chunks.decrementAndGet();
+            return null;
+        }
+
+        return new TrainingChunk(this.capacity, this.w, this.h);
+    }
+
+    /**
+     * Queues the full chunk of a game thread and replaces it with an empty one. Without an empty chunk available, its records are dropped instead.
+     * @param s Slot of the game thread.
+     */
+    private void flush(Slot s) {
+        TrainingChunk c = this.free.poll();
+
+        if (c == null)
+            c = this.newChunk();
+        if (c == null) {
+            this.dropped.addAndGet(s.chunk.size);
+            s.chunk.clear();
+            return;
+        }
+
+        this.pending.add(s.chunk);
+        s.chunk = c;
+        LockSupport.unpark(this.thread);
+    }
+
+    /**
+     * Queues the partially filled chunks, writes everything and closes the file. No game may be recording at this point.
+     * @throws IOException If any write failed.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the writer.
+     */
+    public void close() throws IOException, InterruptedException {
+        for (Slot s : this.slots)
+            if (s.chunk != null && s.chunk.size > 0)
+                this.pending.add(s.chunk);
+        this.slots.clear();
+
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        this.thread.join();
+        this.channel.close();
+
+        if (this.error != null)
+            throw this.error;
+    }
+
+    /**
+     * Waits for an asynchronous write.
+     * @param f The write.
+     * @return Number of bytes written.
+     * @throws IOException If the write failed or the thread was interrupted.
+     */
+    private int await(Future<Integer> f) throws IOException {
+        try {
+            return f.get();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Waits for the pending write of a buffer to be complete, resuming it if it was partial.
+     * @param i Index of the buffer.
+     * @throws IOException If the write failed.
+     */
+    private void finish(int i) throws IOException {
+        while (this.writes[i] != null) {
+            this.await(this.writes[i]);
+            if (this.buffers[i].hasRemaining())
+                this.writes[i] = this.channel.write(this.buffers[i], this.offsets[i] + this.buffers[i].position());
+            else
+                this.writes[i] = null;
+        }
+    }
+
+    /**
+     * Encodes a chunk, compresses it if required and starts writing it from the buffer which isn't being written.
+     * @param c The chunk.
+     * @throws IOException If the previous write from the same buffer failed.
+     */
+    private void write(TrainingChunk c) throws IOException {
+        int n = c.getEncodedSize();
+        int stored = n;
+        byte[] bytes = this.raw;
+        ByteBuffer b;
+
+        if (this.raw.length < n)
+            this.raw = bytes = new byte[n];
+        c.encode(ByteBuffer.wrap(this.raw, 0, n).order(ByteOrder.LITTLE_ENDIAN));
+
+        if (this.compress) {
+            if (this.packed.length < n)
+                this.packed = new byte[n];
+            this.deflater.reset();
+            this.deflater.setInput(this.raw, 0, n);
+            this.deflater.finish();
+            stored = this.deflater.deflate(this.packed, 0, n);
+            // Incompressible blocks are stored as they are.
+            if (this.deflater.finished() && stored < n)
+                bytes = this.packed;
+            else
+                stored = n;
+        }
+
+        this.active ^= 1;
+        this.finish(this.active);
+        b = this.buffers[this.active];
+        if (b.capacity() < 12 + stored)
+            this.buffers[this.active] = b = ByteBuffer.allocateDirect(12 + stored).order(ByteOrder.LITTLE_ENDIAN);
+        b.clear();
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        b.putInt(c.size);
+        b.putInt(n);
+        b.putInt(stored);
+        b.put(bytes, 0, stored);
+        b.flip();
+
+        this.offsets[this.active] = this.position;
+        this.writes[this.active] = this.channel.write(b, this.position);
+        this.position += 12 + stored;
+    }
+
+    /**
+     * Body of the writer thread: writes the queued chunks in order and recycles them, parking while the queue is empty. After a failure the chunks are only counted as dropped.
+     * It ends once the exporter is closed and the queue is empty.
+     */
+    public void run() {
+        TrainingChunk c;
+
+        while (true) {
+            c = this.pending.poll();
+            if (c == null) {
+                if (!this.running && this.pending.isEmpty())
+                    break;
+                LockSupport.parkNanos(this, 10000000L);
+                continue;
+            }
+
+            if (this.error == null)
+                try {
+                    this.write(c);
+                    this.records += c.size;
+                } catch (IOException ex) {
+                    this.error = ex;
+                }
+            if (this.error != null)
+                this.dropped.addAndGet(c.size);
+            c.clear();
+            this.free.add(c);
+        }
+
+        try {
+            this.finish(0);
+            this.finish(1);
+        } catch (IOException ex) {
+            if (this.error == null)
+                this.error = ex;
+        }
+        this.deflater.end();
+    }
+}
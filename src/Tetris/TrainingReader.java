@@ -0,0 +1,130 @@
+package Tetris;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks of a file written by a TrainingExporter, one chunk at a time.
+ */
+public class TrainingReader implements AutoCloseable {
+    protected FileChannel channel;
+    protected int w, h;
+    protected boolean compressed;
+    protected ByteBuffer header;
+    protected Inflater inflater;
+
+    /**
+     * Constructor. Reads the file header.
+     * @param file Source file.
+     * @throws IOException If the file can't be read or wasn't written by a TrainingExporter.
+     */
+    public TrainingReader(Path file) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(TrainingExporter.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        if (!this.fill(b) || b.getInt() != TrainingExporter.MAGIC || b.get() != TrainingExporter.VERSION) {
+            this.channel.close();
+            throw new IOException("Not a training file: " + file);
+        }
+        this.compressed = b.get() != 0;
+        this.w = b.getInt();
+        this.h = b.getInt();
+        if (this.w <= 0 || this.h <= 0 || this.h > Short.MAX_VALUE) {
+            this.channel.close();
+            throw new IOException("Invalid board size: " + this.w + "x" + this.h);
+        }
+        this.header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        this.inflater = new Inflater();
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public boolean isCompressed() {
+        return this.compressed;
+    }
+
+    /**
+     * Reads a buffer completely.
+     * @param b The buffer, flipped on return: its remaining bytes are those which have been read.
+     * @return False if the end of the file was reached first.
+     * @throws IOException If the file can't be read.
+     */
+    private boolean fill(ByteBuffer b) throws IOException {
+        boolean ret;
+
+        while (b.hasRemaining() && this.channel.read(b) >= 0)
+            ;
+        ret = !b.hasRemaining();
+        b.flip();
+
+        return ret;
+    }
+
+    /**
+     * Reads the next block.
+     * @return Its records, or null at the end of the file.
+     * @throws IOException If the file can't be read or is truncated or corrupt.
+     */
+    public TrainingChunk next() throws IOException {
+        TrainingChunk ret;
+        ByteBuffer b;
+        byte[] raw, stored;
+        int n, size, length;
+
+        this.header.clear();
+        if (!this.fill(this.header)) {
+            // Only a file ending on a block boundary is complete.
+            if (this.header.hasRemaining())
+                throw new IOException("Truncated block");
+            return null;
+        }
+        n = this.header.getInt();
+        size = this.header.getInt();
+        length = this.header.getInt();
+        // Check the header before allocating anything: stored blocks are never larger than their encoded records.
+        if (n < 0 || (long)n * TrainingChunk.getRecordSize(this.w, this.h) != size || length < 0 || length > size)
+            throw new IOException("Corrupt block");
+        if (length > this.channel.size() - this.channel.position())
+            throw new IOException("Truncated block");
+        stored = new byte[length];
+        if (!this.fill(ByteBuffer.wrap(stored)))
+            throw new IOException("Truncated block");
+
+        if (stored.length < size) {
+            raw = new byte[size];
+            this.inflater.reset();
+            this.inflater.setInput(stored);
+            try {
+                if (this.inflater.inflate(raw) != size)
+                    throw new IOException("Corrupt block");
+            } catch (DataFormatException ex) {
+                throw new IOException(ex);
+            }
+        }
+        else
+            raw = stored;
+
+        b = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        ret = new TrainingChunk(n, this.w, this.h);
+        ret.decode(b, n);
+
+        return ret;
+    }
+
+    public void close() throws IOException {
+        this.inflater.end();
+        this.channel.close();
+    }
+}
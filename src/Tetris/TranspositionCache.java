@@ -0,0 +1,218 @@
+package Tetris;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cache mapping field hashes (see Zobrist) to evaluations, shareable by parallel search threads.
+ * It's set associative: a hash selects a set of WAYS entries, and a full set evicts one of its entries, either with the CLOCK (second chance) or the LRU policy.
+ * Sets are grouped in independently locked stripes, so threads rarely contend. Each stripe owns a contiguous range of sets, and thus of every per entry and per set array,
+ * so threads working on different stripes don't write to the same cache lines (except at the boundaries of the ranges). Nothing is allocated after construction.
+ */
+public class TranspositionCache {
+    public enum Eviction_t {CLOCK, LRU};
+
+    /**
+     * Number of entries per set.
+     */
+    public static final int WAYS = 8;
+
+    // Statistics of a stripe, in its own block of the counters array: blocks are 128 bytes apart, so two stripes never share a cache line.
+    private static final int STRIDE = 16;
+    private static final int CLOCK = 0;
+    private static final int HITS = 1;
+    private static final int MISSES = 2;
+    private static final int EVICTIONS = 3;
+
+    // Stamp of an empty entry. Otherwise the stamp is the reference bit (0 or 1) for CLOCK and the access time (from 1) for LRU.
+    private static final long EMPTY = -1;
+
+    protected Eviction_t eviction;
+    protected int sets;
+    protected int shift;
+    protected long[] keys;
+    protected double[] values;
+    protected long[] stamps;
+    protected int[] hands;
+    protected Object[] locks;
+    protected long[] counters;
+
+    /**
+     * Constructor.
+     * @param capacity Maximum number of entries. It's rounded up to a power of two, at least WAYS.
+     * @param stripes Number of independently locked stripes. It's rounded up to a power of two, at most the number of sets.
+     * @param eviction Eviction policy.
+     */
+    public TranspositionCache(int capacity, int stripes, Eviction_t eviction) {
+        int i;
+
+        this.eviction = eviction;
+        this.sets = Math.max(1, Integer.highestOneBit(Math.max(capacity, WAYS) - 1) * 2 / WAYS);
+        stripes = Math.min(this.sets, (stripes <= 1)? 1: Integer.highestOneBit(stripes - 1) * 2);
+        this.keys = new long[this.sets * WAYS];
+        this.values = new double[this.sets * WAYS];
+        this.stamps = new long[this.sets * WAYS];
+        Arrays.fill(this.stamps, EMPTY);
+        this.hands = new int[this.sets];
+        this.shift = Integer.numberOfTrailingZeros(this.sets / stripes);
+        this.locks = new Object[stripes];
+        for (i = 0; i < stripes; i++)
+            this.locks[i] = new Object();
+        this.counters = new long[stripes * STRIDE];
+    }
+
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Selects the set of a hash.
+     * @param hash The hash.
+     * @return Index of the set.
+     */
+    private int set(long hash) {
+        return (int)SplitMix64.mix(hash) & (this.sets - 1);
+    }
+
+    /**
+     * Gets the stripe of a set. The high bits of the set select it, so a stripe owns a contiguous range of sets.
+     * @param s Index of the set.
+     * @return Index of the stripe.
+     */
+    private int stripe(int s) {
+        return s >>> this.shift;
+    }
+
+    /**
+     * Looks an evaluation up.
+     * @param hash Hash of the field.
+     * @param missing Value returned if the hash isn't cached.
+     * @return The cached evaluation, or missing.
+     */
+    public double get(long hash, double missing) {
+        int s = this.set(hash);
+        int stripe = this.stripe(s);
+        int i;
+
+        synchronized (this.locks[stripe]) {
+            for (i = s * WAYS; i < (s + 1) * WAYS; i++)
+                if (this.stamps[i] != EMPTY && this.keys[i] == hash) {
+                    this.touch(i, stripe);
+                    this.counters[stripe * STRIDE + HITS]++;
+                    return this.values[i];
+                }
+            this.counters[stripe * STRIDE + MISSES]++;
+        }
+
+        return missing;
+    }
+
+    /**
+     * Stores an evaluation, replacing the previous one for the same hash. If the set is full, an entry is evicted.
+     * @param hash Hash of the field.
+     * @param value The evaluation.
+     */
+    public void put(long hash, double value) {
+        int s = this.set(hash);
+        int stripe = this.stripe(s);
+        int i, victim = -1;
+
+        synchronized (this.locks[stripe]) {
+            for (i = s * WAYS; i < (s + 1) * WAYS; i++)
+                if (this.stamps[i] == EMPTY)
+                    victim = i;
+                else if (this.keys[i] == hash) {
+                    victim = i;
+                    break;
+                }
+            if (victim < 0) {
+                victim = this.evict(s);
+                this.counters[stripe * STRIDE + EVICTIONS]++;
+            }
+            this.keys[victim] = hash;
+            this.values[victim] = value;
+            this.touch(victim, stripe);
+        }
+    }
+
+    /**
+     * Marks an entry as recently used: its reference bit for CLOCK, its access time for LRU.
+     * @param i Index of the entry.
+     * @param stripe Stripe of the entry, whose lock is held.
+     */
+    private void touch(int i, int stripe) {
+        this.stamps[i] = (this.eviction == Eviction_t.CLOCK)? 1: ++this.counters[stripe * STRIDE + CLOCK];
+    }
+
+    /**
+     * Chooses the entry to be evicted from a full set.
+     * @param s Index of the set, whose stripe lock is held.
+     * @return Index of the entry.
+     */
+    private int evict(int s) {
+        int base = s * WAYS;
+        int i, ret;
+
+        if (this.eviction == Eviction_t.CLOCK) {
+            // Clear the reference bits until an unreferenced entry is found (at most one revolution).
+            for (;;) {
+                i = base + this.hands[s];
+                this.hands[s] = (this.hands[s] + 1) % WAYS;
+                if (this.stamps[i] == 0)
+                    return i;
+                this.stamps[i] = 0;
+            }
+        }
+
+        ret = base;
+        for (i = base + 1; i < base + WAYS; i++)
+            if (this.stamps[i] < this.stamps[ret])
+                ret = i;
+
+        return ret;
+    }
+
+    /**
+     * Removes every entry and resets the statistics.
+     */
+    public void clear() {
+        int stripe, from;
+
+        for (stripe = 0; stripe < this.locks.length; stripe++)
+            synchronized (this.locks[stripe]) {
+                from = (stripe << this.shift) * WAYS;
+                Arrays.fill(this.stamps, from, from + (WAYS << this.shift), EMPTY);
+                this.counters[stripe * STRIDE + HITS] = 0;
+                this.counters[stripe * STRIDE + MISSES] = 0;
+                this.counters[stripe * STRIDE + EVICTIONS] = 0;
+            }
+    }
+
+    /**
+     * Sums a statistic over the stripes.
+     * @param counter The statistic (HITS, MISSES or EVICTIONS).
+     * @return The total.
+     */
+    private long sum(int counter) {
+        long ret = 0;
+        int i;
+
+        for (i = 0; i < this.locks.length; i++)
+            synchronized (this.locks[i]) {
+                ret += this.counters[i * STRIDE + counter];
+            }
+
+        return ret;
+    }
+
+    public long getHits() {
+        return this.sum(HITS);
+    }
+
+    public long getMisses() {
+        return this.sum(MISSES);
+    }
+
+    public long getEvictions() {
+        return this.sum(EVICTIONS);
+    }
+}
@@ -0,0 +1,28 @@
+package Tetris;
+
+/**
+ * IPieceGenerator implementation. Each tetromino is drawn independently with the same probability, as the original game did.
+ */
+public class UniformGenerator implements IPieceGenerator {
+    protected SplitMix64 r;
+
+    /**
+     * Constructor.
+     * @param seed Seed of the sequence.
+     */
+    public UniformGenerator(long seed) {
+        this.r = new SplitMix64(seed);
+    }
+
+    public Tetromino.Type_t next() {
+        return Tetromino.typeOf(this.r.nextInt(7));
+    }
+
+    public void saveState(long[] dst) {
+        dst[0] = this.r.getState();
+    }
+
+    public void loadState(long[] src) {
+        this.r.setState(src[0]);
+    }
+}
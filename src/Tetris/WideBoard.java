@@ -0,0 +1,243 @@
+package Tetris;
+
+/**
+ * IBoard implementation for fields wider than a Board. Each row is a run of contiguous long words (bit i of word k is column 64 * k + i) inside a single array, and the rows are kept
+ * in a ring buffer as in Board, so clearing lines only shifts the shorter side of the field. Full line checks, collisions and the line shifts work a whole word at a time;
+ * the loops are plain counted loops over contiguous words, which the JIT compiler can unroll and vectorize.
+ * The fingerprint of every row (see Zobrist) is cached, so updating the hash after a lock only rehashes the words which changed.
+ */
+public class WideBoard implements IBoard {
+    protected int w;
+    protected int h;
+    protected int words;
+    protected long[] rows;
+    protected long[] prints;
+    protected int bottom;
+    protected long last;
+    protected int[] heights;
+    protected long hash;
+
+    /**
+     * Constructor. Creates an empty field.
+     * @param w Width of the field.
+     * @param h Height of the field.
+     */
+    public WideBoard(int w, int h) {
+        if (w <= 0 || h <= 0)
+            throw new IllegalArgumentException("Invalid board size: " + w + "x" + h);
+
+        this.w = w;
+        this.h = h;
+        this.words = (w + 63) / 64;
+        this.rows = new long[this.words * h];
+        this.prints = new long[h];
+        this.bottom = 0;
+        this.last = (w % 64 == 0)? -1L: (1L << (w % 64)) - 1;
+        this.heights = new int[w];
+        this.hash = 0;
+    }
+
+    public int getWidth() {
+        return this.w;
+    }
+
+    public int getHeight() {
+        return this.h;
+    }
+
+    public int getWords() {
+        return this.words;
+    }
+
+    /**
+     * Maps a row of the field to its position inside the ring buffer.
+     * @param y Row of the field.
+     * @return Index of the row's slot (its first word is at slot * words).
+     */
+    protected int index(int y) {
+        int i = this.bottom + y;
+
+        return (i >= this.h)? i - this.h: i;
+    }
+
+    public boolean get(int x, int y) {
+        return (this.rows[this.index(y) * this.words + (x >> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        this.or(y, 1, x);
+    }
+
+    public int getColumnHeight(int x) {
+        return this.heights[x];
+    }
+
+    public boolean intersects(int y, long mask, int x) {
+        int i = this.index(y) * this.words + (x >> 6);
+        int s = x & 63;
+
+        // The mask spans at most two words.
+        if ((this.rows[i] & (mask << s)) != 0)
+            return true;
+
+        return s != 0 && mask >>> (64 - s) != 0 && (this.rows[i + 1] & (mask >>> (64 - s))) != 0;
+    }
+
+    public void or(int y, long mask, int x) {
+        int slot = this.index(y);
+        int k = x >> 6;
+        int s = x & 63;
+        long print = this.prints[slot];
+        long m;
+
+        print = this.orWord(slot, k, mask << s, print);
+        if (s != 0 && mask >>> (64 - s) != 0)
+            print = this.orWord(slot, k + 1, mask >>> (64 - s), print);
+        this.hash ^= Zobrist.row(y, this.prints[slot]) ^ Zobrist.row(y, print);
+        this.prints[slot] = print;
+
+        for (m = mask; m != 0; m &= m - 1) {
+            k = x + Long.numberOfTrailingZeros(m);
+            if (this.heights[k] <= y)
+                this.heights[k] = y + 1;
+        }
+    }
+
+    /**
+     * Occupies some blocks of a word and updates the fingerprint of its row.
+     * @param slot Slot of the row.
+     * @param k Index of the word inside the row.
+     * @param m Blocks to be occupied.
+     * @param print Fingerprint of the row.
+     * @return The new fingerprint.
+     */
+    private long orWord(int slot, int k, long m, long print) {
+        int i = slot * this.words + k;
+
+        print ^= Zobrist.word(this.rows[i], k) ^ Zobrist.word(this.rows[i] | m, k);
+        this.rows[i] |= m;
+
+        return print;
+    }
+
+    public boolean isFull(int y) {
+        int i = this.index(y) * this.words;
+        int end = i + this.words - 1;
+        long acc = -1L;
+
+        // Most rows aren't full: the last (partial) word rules out most of them before the AND of the others.
+        if (this.rows[end] != this.last)
+            return false;
+        for (; i < end; i++)
+            acc &= this.rows[i];
+
+        return acc == -1L;
+    }
+
+    /**
+     * Moves a row to another slot, together with its fingerprint.
+     * @param src Slot of the source row.
+     * @param dst Slot of the destination row.
+     */
+    private void move(int src, int dst) {
+        System.arraycopy(this.rows, src * this.words, this.rows, dst * this.words, this.words);
+        this.prints[dst] = this.prints[src];
+    }
+
+    /**
+     * Empties a row.
+     * @param slot Slot of the row.
+     */
+    private void clear(int slot) {
+        int i = slot * this.words;
+        int end = i + this.words;
+
+        for (; i < end; i++)
+            this.rows[i] = 0;
+        this.prints[slot] = 0;
+    }
+
+    public void removeLines(int[] lines, int n) {
+        int top = 0;
+        int i, k, src, dst;
+
+        if (n == 0)
+            return;
+
+        for (i = 0; i < this.w; i++)
+            top = Math.max(top, this.heights[i]);
+
+        // Only the rows from the lowest cleared line upwards change: remove their keys now, add the new ones after the shift.
+        for (i = lines[0]; i < top; i++)
+            this.hash ^= Zobrist.row(i, this.prints[this.index(i)]);
+
+        if (lines[n - 1] < top - lines[0]) {
+            // Fewer rows below the cleared lines: move them up, then the (now empty) bottom slots become the top rows.
+            k = n - 1;
+            dst = lines[n - 1];
+            for (src = lines[n - 1]; src >= 0; src--)
+                if (k >= 0 && src == lines[k])
+                    k--;
+                else
+                    this.move(this.index(src), this.index(dst--));
+            for (i = 0; i < n; i++)
+                this.clear(this.index(i));
+            this.bottom = this.index(n);
+        }
+        else {
+            // Move the rows above down, up to the highest occupied one.
+            k = 0;
+            dst = lines[0];
+            for (src = lines[0]; src < top; src++)
+                if (k < n && src == lines[k])
+                    k++;
+                else
+                    this.move(this.index(src), this.index(dst++));
+            for (; dst < top; dst++)
+                this.clear(this.index(dst));
+        }
+        for (i = lines[0]; i < top - n; i++)
+            this.hash ^= Zobrist.row(i, this.prints[this.index(i)]);
+
+        // The removed lines were full, so every column reaches the highest of them.
+        for (i = 0; i < this.w; i++)
+            if (this.heights[i] > lines[n - 1] + 1)
+                this.heights[i] -= n;
+            else {
+                this.heights[i] = lines[n - 1] + 1 - n;
+                while (this.heights[i] > 0 && !this.get(i, this.heights[i] - 1))
+                    this.heights[i]--;
+            }
+    }
+
+    public void copyRows(long[] dst) {
+        int n = (this.h - this.bottom) * this.words;
+
+        System.arraycopy(this.rows, this.bottom * this.words, dst, 0, n);
+        System.arraycopy(this.rows, 0, dst, n, this.bottom * this.words);
+    }
+
+    public long hash() {
+        return this.hash;
+    }
+
+    public void copyHeights(int[] dst) {
+        System.arraycopy(this.heights, 0, dst, 0, this.w);
+    }
+
+    public void load(long[] rows, int[] heights, long hash) {
+        int i, k;
+        long print;
+
+        this.bottom = 0;
+        System.arraycopy(rows, 0, this.rows, 0, this.words * this.h);
+        for (i = 0; i < this.h; i++) {
+            print = 0;
+            for (k = 0; k < this.words; k++)
+                print ^= Zobrist.word(this.rows[i * this.words + k], k);
+            this.prints[i] = print;
+        }
+        System.arraycopy(heights, 0, this.heights, 0, this.w);
+        this.hash = hash;
+    }
+}
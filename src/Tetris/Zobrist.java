@@ -0,0 +1,51 @@
+package Tetris;
+
+/**
+ * Zobrist hashing of playing fields. The hash of a field is the XOR of one key per non-empty row, derived from the row index and the row content,
+ * so locking a tetromino updates at most four keys and a line clear only rekeys the rows which are shifted down. Every IBoard and every snapshot (see Tetris.getField()) of the same field has the same hash.
+ */
+public class Zobrist {
+    private static final long WORD_KEY = 0x9e3779b97f4a7c15L;
+    private static final long ROW_KEY = 0xd1b54a32d192ed03L;
+
+    /**
+     * Computes the contribution of a word to the fingerprint of its row.
+     * @param word The word.
+     * @param k Index of the word inside the row.
+     * @return The contribution, 0 for an empty word.
+     */
+    public static long word(long word, int k) {
+        return (word == 0)? 0: SplitMix64.mix(word + k * WORD_KEY);
+    }
+
+    /**
+     * Computes the key of a row.
+     * @param y Row index.
+     * @param fingerprint XOR of word() over the words of the row.
+     * @return The key, 0 for an empty row.
+     */
+    public static long row(int y, long fingerprint) {
+        return (fingerprint == 0)? 0: SplitMix64.mix(fingerprint ^ (y + 1) * ROW_KEY);
+    }
+
+    /**
+     * Computes the hash of a field snapshot.
+     * @param rows The field, bottom row first, words longs per row.
+     * @param words Number of longs per row.
+     * @param h Number of rows.
+     * @return The hash.
+     */
+    public static long hash(long[] rows, int words, int h) {
+        long ret = 0, f;
+        int i, k;
+
+        for (i = 0; i < h; i++) {
+            f = 0;
+            for (k = 0; k < words; k++)
+                f ^= word(rows[i * words + k], k);
+            ret ^= row(i, f);
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,204 @@
+package Tetris;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Differential check of BatchEngine against Tetris: each game of a batch and a Tetris instance with the same seed are stepped in lockstep with the same actions,
+ * and their field, tetromino (type, position and rotation), next tetromino, score, lines, level, statistics and game over flag are compared after every step.
+ * Purely random actions rarely clear a line, so each size is also played with planned actions: every new tetromino is moved to one of the lowest placements found by a PlacementGenerator,
+ * then hard dropped or soft dropped.
+ */
+public class BatchEngineTest {
+    private static final Replay.Op_t[] OPS = Replay.Op_t.values();
+    private static final int GAMES = 300;
+
+    /**
+     * Applies an action to a Tetris instance, as BatchEngine.step() does before the update.
+     * @param t The game.
+     * @param action The action, or BatchEngine.NONE.
+     */
+    private static void apply(Tetris t, byte action) {
+        if (action == BatchEngine.NONE)
+            return;
+
+        switch (OPS[action]) {
+            case LEFT:
+                t.moveLeft();
+                break;
+            case RIGHT:
+                t.moveRight();
+                break;
+            case DOWN:
+                t.moveDown();
+                break;
+            case ROTATE_LEFT:
+                t.rotateLeft();
+                break;
+            case ROTATE_RIGHT:
+                t.rotateRight();
+                break;
+            case HARD_DROP:
+                t.hardDrop();
+                break;
+            case DROP_ON:
+                t.setDropping(true);
+                break;
+            case DROP_OFF:
+                t.setDropping(false);
+                break;
+        }
+    }
+
+    /**
+     * Draws a random action: every Op_t, with extra hard drops, and a bias towards the left wall on narrow fields so the stacks don't just pile up in the middle.
+     * @param r The random number generator.
+     * @param w Width of the playing field.
+     * @return The action.
+     */
+    private static byte action(SplitMix64 r, int w) {
+        int q = r.nextInt(12);
+
+        if (q < OPS.length)
+            return (byte)q;
+        if (q < 10)
+            return (byte)Replay.Op_t.HARD_DROP.ordinal();
+        if (q == 10)
+            return (w < 9)? (byte)Replay.Op_t.LEFT.ordinal(): BatchEngine.NONE;
+        return (byte)Replay.Op_t.RIGHT.ordinal();
+    }
+
+    /**
+     * Plans the actions moving a tetromino to one of the lowest placements, ties being broken at random.
+     * @param t The game.
+     * @param g The placement generator.
+     * @param r The random number generator.
+     * @param plan Receives the actions.
+     */
+    private static void plan(Tetris t, PlacementGenerator g, SplitMix64 r, ArrayDeque<Byte> plan) {
+        int[] out = new int[4 * t.getWidth()];
+        int n = g.generate(t, out);
+        int best, dx, i;
+
+        plan.clear();
+        if (n == 0)
+            return;
+
+        best = out[0];
+        for (i = 1; i < n; i++)
+            if (PlacementGenerator.getY(out[i]) < PlacementGenerator.getY(best) || (PlacementGenerator.getY(out[i]) == PlacementGenerator.getY(best) && r.nextInt(2) == 0))
+                best = out[i];
+        for (i = 0; i < PlacementGenerator.getRotation(best); i++)
+            plan.add((byte)Replay.Op_t.ROTATE_LEFT.ordinal());
+        dx = PlacementGenerator.getX(best) - t.getX();
+        for (i = 0; i < Math.abs(dx); i++)
+            plan.add((byte)((dx < 0)? Replay.Op_t.LEFT.ordinal(): Replay.Op_t.RIGHT.ordinal()));
+        plan.add((byte)((r.nextInt(3) == 0)? Replay.Op_t.DROP_ON.ordinal(): Replay.Op_t.HARD_DROP.ordinal()));
+        if (r.nextInt(4) == 0)
+            plan.add((byte)Replay.Op_t.DROP_OFF.ordinal());
+    }
+
+    /**
+     * Plays a batch in lockstep with Tetris instances until every game is over.
+     * @param w Width of the playing fields.
+     * @param h Height of the playing fields.
+     * @param planned True for planned actions, false for random ones.
+     * @return Total number of lines cleared.
+     */
+    private static long play(int w, int h, boolean planned) {
+        long[] seeds = new long[GAMES];
+        Tetris[] games = new Tetris[GAMES];
+        final boolean[] over = new boolean[GAMES];
+        byte[] actions = new byte[GAMES];
+        ArrayDeque<Byte>[] plans = newPlans();
+        int[] pieces = new int[GAMES];
+        PlacementGenerator generator = new PlacementGenerator(w, h);
+        long[] expected = new long[h];
+        long[] actual = new long[h];
+        SplitMix64 r = new SplitMix64(w * 31 + h + ((planned)? 1: 0));
+        BatchEngine e;
+        long lines = 0;
+        int i, p, running;
+
+        for (i = 0; i < GAMES; i++) {
+            final int g = i;
+
+            seeds[i] = i * 7919L + w;
+            games[i] = new Tetris(w, h, 1, seeds[i]);
+            games[i].attachGameOver(new IGameOver() {
+                public void exec() {
+                    over[g] = true;
+                }
+            });
+        }
+        e = new BatchEngine(w, h, 1, seeds);
+
+        do {
+            for (i = 0; i < GAMES; i++)
+                if (!planned)
+                    actions[i] = action(r, w);
+                else {
+                    p = 0;
+                    for (int c : games[i].getStatistics())
+                        p += c;
+                    if (p != pieces[i]) {
+                        pieces[i] = p;
+                        plan(games[i], generator, r, plans[i]);
+                    }
+                    actions[i] = (plans[i].isEmpty())? BatchEngine.NONE: plans[i].poll();
+                }
+            for (i = 0; i < GAMES; i++)
+                if (!over[i]) {
+                    apply(games[i], actions[i]);
+                    games[i].update();
+                }
+            running = e.step(actions);
+
+            for (i = 0; i < GAMES; i++) {
+                games[i].getField(expected);
+                e.getField(i, actual);
+                if (over[i] != e.isOver(i) || !Arrays.equals(expected, actual)
+                        || games[i].getCurrent() != e.getCurrent(i) || games[i].getX() != e.getX(i) || games[i].getY() != e.getY(i)
+                        || games[i].getTetromino().getRotation() != e.getRotation(i) || games[i].getNext() != e.getNext(i)
+                        || games[i].getScore() != e.getScore(i) || games[i].getLines() != e.getLines(i) || games[i].getLevel() != e.getLevel(i)
+                        || !Arrays.equals(games[i].getStatistics(), e.getResult(i, seeds[i]).statistics))
+                    throw new AssertionError("Game " + i + " differs, " + w + "x" + h);
+            }
+        } while (running > 0);
+
+        for (i = 0; i < GAMES; i++) {
+            if (!over[i])
+                throw new AssertionError("Game " + i + " isn't over, " + w + "x" + h);
+            lines += e.getLines(i);
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return One empty plan per game.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayDeque<Byte>[] newPlans() {
+        ArrayDeque<Byte>[] plans = new ArrayDeque[GAMES];
+
+        for (int i = 0; i < GAMES; i++)
+            plans[i] = new ArrayDeque<>();
+
+        return plans;
+    }
+
+    public static void main(String[] args) {
+        int[][] sizes = {{10, 20}, {6, 12}, {64, 30}, {8, 16}, {6, 8}, {12, 40}};
+        long random = 0, planned = 0;
+
+        for (int[] s : sizes) {
+            random += play(s[0], s[1], false);
+            planned += play(s[0], s[1], true);
+        }
+        if (planned < sizes.length * GAMES)
+            throw new AssertionError("Too few lines cleared: " + planned);
+
+        System.out.println("BatchEngineTest: " + 2 * sizes.length * GAMES + " games, " + (random + planned) + " lines OK");
+    }
+}
@@ -0,0 +1,70 @@
+package Tetris;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Checks that SpectatorDecoder reproduces Tetris.getImage(), the score and the next tetromino after every frame, on narrow and wide fields.
+ * A second decoder misses random frames and must match again once it has resynchronized on a keyframe.
+ */
+public class SpectatorDecoderTest {
+    private static final int GAMES = 200;
+
+    /**
+     * Plays a game with random inputs and checks the decoders after every published frame.
+     * @param w Width of the playing field.
+     * @param h Height of the playing field.
+     * @param seed Seed of the game and of the inputs.
+     * @return Number of frames checked.
+     */
+    private static long play(int w, int h, long seed) {
+        final Tetris t = new Tetris(w, h, 1, seed);
+        final SpectatorDecoder all = new SpectatorDecoder();
+        final SpectatorDecoder lossy = new SpectatorDecoder();
+        final boolean[] drop = new boolean[1];
+        SpectatorEncoder e = new SpectatorEncoder(t, 50);
+        Simulation s = new Simulation(t);
+        RandomPolicy p = new RandomPolicy(seed);
+        Random r = new Random(seed);
+        long frames = 0;
+        int i;
+
+        e.attach(new ISpectator() {
+            public void exec(ByteBuffer b) {
+                all.decode(b.duplicate());
+                if (!drop[0])
+                    lossy.decode(b.duplicate());
+            }
+        });
+
+        while (!s.isGameOver()) {
+            for (i = r.nextInt(30); i >= 0 && !s.isGameOver(); i--) {
+                p.exec(s);
+                s.tick();
+                if (r.nextInt(40) == 0)
+                    t.hardDrop();
+            }
+            drop[0] = r.nextInt(100) == 0;
+            e.publish();
+            frames++;
+
+            if (!all.getImage().equals(t.getImage()) || all.getScore() != t.getScore() || all.getNext() != t.getNext())
+                throw new AssertionError("Decoded game differs, " + w + "x" + h + " seed " + seed + " frame " + frames);
+            if (!drop[0] && lossy.isSynced() && !lossy.getImage().equals(t.getImage()))
+                throw new AssertionError("Resynchronized game differs, " + w + "x" + h + " seed " + seed + " frame " + frames);
+        }
+
+        return frames;
+    }
+
+    public static void main(String[] args) {
+        int[] widths = {10, 64, 100, 130};
+        long frames = 0;
+        int g;
+
+        for (g = 0; g < GAMES; g++)
+            frames += play(widths[g % widths.length], 20 + g % 10, g);
+
+        System.out.println("SpectatorDecoderTest: " + GAMES + " games, " + frames + " frames OK");
+    }
+}